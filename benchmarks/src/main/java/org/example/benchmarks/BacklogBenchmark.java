@@ -0,0 +1,113 @@
+package org.example.benchmarks;
+
+import org.example.process.Packet;
+import org.example.process.StreamingEnvelopeCodec;
+import org.example.store.InMemoryOfflineMessageStore;
+import org.example.store.OfflineMessageStore;
+import org.example.store.SegmentLogOfflineMessageStore;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Підтвердження доставки ({@code deleteSaveMessages}) при великій офлайн-черзі отримувача.
+ * Кожна ітерація вимірює {@value #BATCH} підтверджень поспіль; видалені повідомлення зберігаються знову
+ * перед наступною ітерацією, поза виміром, тож розмір черги між ітераціями не змінюється.
+ * Результат — час на всю пачку.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, batchSize = BacklogBenchmark.BATCH)
+@Measurement(iterations = 50, batchSize = BacklogBenchmark.BATCH)
+@Fork(1)
+public class BacklogBenchmark {
+
+    static final int BATCH = 100;
+
+    @Param({"memory", "log"})
+    public String store;
+
+    @Param({"1000", "100000"})
+    public int backlog;
+
+    private Fixtures fixtures;
+    private Path directory;
+    private Packet[] packets;
+    private int next;
+    private int deleted;
+
+    @Setup
+    public void setUp() throws IOException {
+        StreamingEnvelopeCodec codec = new StreamingEnvelopeCodec();
+        OfflineMessageStore offline;
+        if ("log".equals(store)) {
+            directory = Files.createTempDirectory("backlog-bench");
+            offline = new SegmentLogOfflineMessageStore(directory, 64 * 1024 * 1024, 10, codec);
+        } else {
+            offline = new InMemoryOfflineMessageStore();
+        }
+        fixtures = new Fixtures(offline);
+        packets = new Packet[backlog];
+        for (int i = 0; i < backlog; i++) {
+            String json = new JSONObject()
+                    .put("senderId", "alice")
+                    .put("receiverId", "bob")
+                    .put("operation", "message")
+                    .put("message", "message " + i)
+                    .put("messageId", "m-" + i)
+                    .toString();
+            packets[i] = Packet.parse(json, codec);
+            offline.append("bob", packets[i]);
+        }
+    }
+
+    /**
+     * Повертає в чергу повідомлення, підтверджені в попередній ітерації.
+     */
+    @Setup(Level.Iteration)
+    public void refill() {
+        for (int i = deleted; i > 0; i--) {
+            fixtures.store.append("bob", packets[Math.floorMod(next - i, backlog)]);
+        }
+        deleted = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fixtures.close();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void deleteSavedMessage() {
+        Packet packet = packets[next];
+        next = (next + 1) % backlog;
+        deleted++;
+        fixtures.handler.deleteSaveMessages("bob", packet.getMessageId());
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.benchmarks;
+
+import org.example.store.InMemoryOfflineMessageStore;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Статуси контактів у відповідь на пінг {@code CHECK_STATUS}: повний список (як у {@code REGISTER_OK})
+ * і версійна відповідь лише зі змінами. Половина контактів «онлайн» на іншому вузлі кластера;
+ * після версії, яку клієнт отримав востаннє, змінився статус кожного десятого контакту.
+ * Вимірюється обробка кадру в потоці сесії, включно з підпискою, відтворенням (порожньої) черги і записом відповіді.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactStatusBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int contacts;
+
+    private Fixtures fixtures;
+    private final Fixtures.NullSession session = new Fixtures.NullSession("user");
+    private TextMessage fullList;
+    private TextMessage changesOnly;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixtures = new Fixtures(new InMemoryOfflineMessageStore());
+        JSONArray ids = new JSONArray();
+        for (int i = 0; i < contacts; i++) {
+            String id = "contact-" + i;
+            ids.put(id);
+            if (i % 2 == 0) {
+                fixtures.handler.onRemotePresence("node-2", id, "online");
+            }
+        }
+        JSONObject ping = new JSONObject().put("userId", "user").put("life", "online").put("contacts", ids.toString());
+        fullList = new TextMessage("CHECK_STATUS:" + ping);
+        fixtures.handler.afterConnectionEstablished(session);
+        fixtures.handler.handleMessage(session, new TextMessage("REGISTER:" + ping));
+
+        long since = version(new JSONObject().put("userId", "user").put("life", "online").put("version", 0));
+        for (int i = 0; i < contacts; i += 10) {
+            fixtures.handler.onRemotePresence("node-2", "contact-" + i, "disconnect");
+        }
+        changesOnly = new TextMessage("CHECK_STATUS:" + new JSONObject().put("userId", "user").put("life", "online")
+                .put("version", since));
+    }
+
+    /**
+     * Надсилає версійний {@code CHECK_STATUS} і повертає версію з відповіді.
+     */
+    private long version(JSONObject ping) throws Exception {
+        fixtures.handler.handleMessage(session, new TextMessage("CHECK_STATUS:" + ping));
+        String reply = ((TextMessage) session.last()).getPayload();
+        return new JSONObject(reply.substring(reply.indexOf(':') + 1)).getLong("version");
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixtures.close();
+    }
+
+    @Benchmark
+    public void fullContactStatus() throws Exception {
+        fixtures.handler.handleMessage(session, fullList);
+    }
+
+    @Benchmark
+    public void changedContactsOnly() throws Exception {
+        fixtures.handler.handleMessage(session, changesOnly);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.benchmarks;
+
+import org.example.process.BinaryEnvelopeCodec;
+import org.example.process.Envelope;
+import org.example.process.JsonOrgEnvelopeCodec;
+import org.example.process.StreamingEnvelopeCodec;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Розбір і серіалізація конверта: вихідний шлях через {@code new Envelope(JSONObject)} / {@code toJson(String...)}
+ * у порівнянні з потоковим і бінарним кодеками.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    private static final String[] FIELDS = {"senderId", "receiverId", "operation", "message", "messageId"};
+
+    @Param({"32", "4096"})
+    public int messageSize;
+
+    private final JsonOrgEnvelopeCodec orgJson = new JsonOrgEnvelopeCodec();
+    private final StreamingEnvelopeCodec streaming = new StreamingEnvelopeCodec();
+    private final BinaryEnvelopeCodec binary = new BinaryEnvelopeCodec();
+
+    private String json;
+    private byte[] bytes;
+    private Envelope envelope;
+
+    @Setup
+    public void setUp() {
+        json = new JSONObject()
+                .put("senderId", "alice")
+                .put("receiverId", "bob")
+                .put("operation", "message")
+                .put("message", "x".repeat(messageSize))
+                .put("messageId", "3f2b7c1e-0a4d-4c55-9d0e-8b1f6a2c9e71")
+                .toString();
+        envelope = streaming.decode(json);
+        bytes = binary.encode(envelope);
+    }
+
+    @Benchmark
+    public Envelope parseJsonObject() {
+        return new Envelope(new JSONObject(json));
+    }
+
+    @Benchmark
+    public String serialiseToJson() {
+        return envelope.toJson(FIELDS).toString();
+    }
+
+    @Benchmark
+    public String encodeOrgJson() {
+        return orgJson.encode(envelope);
+    }
+
+    @Benchmark
+    public Envelope decodeStreaming() {
+        return streaming.decode(json);
+    }
+
+    @Benchmark
+    public String encodeStreaming() {
+        return streaming.encode(envelope);
+    }
+
+    @Benchmark
+    public Envelope decodeBinary() {
+        return binary.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binary.encode(envelope);
+    }
+}
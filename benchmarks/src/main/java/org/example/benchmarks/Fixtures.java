@@ -0,0 +1,231 @@
+package org.example.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.BacklogReplayer;
+import org.example.MailboxMetrics;
+import org.example.MessageWebSocketHandler;
+import org.example.MessagingMetrics;
+import org.example.OutboundMailbox;
+import org.example.ShardExecutor;
+import org.example.StatusCoalescer;
+import org.example.cluster.SingleNodeClusterBus;
+import org.example.presence.PresenceTracker;
+import org.example.process.EnvelopeCodec;
+import org.example.process.StreamingEnvelopeCodec;
+import org.example.store.HandshakeKeyStore;
+import org.example.store.MessageStatusTable;
+import org.example.store.OfflineMessageStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обробник повідомлень з тими самими компонентами, що й у {@code WebSocketConfig}, але без Spring і мережі.
+ * Доставка, шарди і вихідні черги виконують роботу в потоці виклику, тож вимірюваний виклик
+ * не залишає фонової роботи, яка б виконувалась поза виміром або заважала наступним викликам.
+ */
+final class Fixtures implements AutoCloseable {
+
+    final OfflineMessageStore store;
+    final MessageWebSocketHandler handler;
+
+    private final ExecutorService executor = new DirectExecutorService();
+    private final ShardExecutor shards = new DirectShardExecutor();
+    private final PresenceTracker presence = new PresenceTracker(60_000, 500);
+    private final StatusCoalescer<?> coalescer;
+    private final MessagingMetrics metrics = new MessagingMetrics(new SimpleMeterRegistry());
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    Fixtures(OfflineMessageStore store) {
+        this.store = store;
+        EnvelopeCodec codec = new StreamingEnvelopeCodec();
+        StatusCoalescer coalescer = new StatusCoalescer(0);
+        this.coalescer = coalescer;
+        this.handler = new MessageWebSocketHandler(new ConcurrentHashMap<>(), store, new MessageStatusTable(600_000, 1_000_000),
+                presence, new ConcurrentHashMap<>(), new HandshakeKeyStore(), executor, shards,
+                new OutboundMailbox.Limits(1024, 1 << 20, 10_000, OutboundMailbox.Overflow.SPILL), new MailboxMetrics(), metrics,
+                coalescer, new BacklogReplayer(store, shards, 100, 32, 30_000), codec, new SingleNodeClusterBus("node-1"));
+    }
+
+    @Override
+    public void close() {
+        coalescer.close();
+        presence.close();
+        metrics.close();
+        shards.shutdown();
+        executor.shutdown();
+        store.close();
+    }
+
+    /**
+     * Виконує завдання одразу в потоці виклику.
+     */
+    private static final class DirectExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    /**
+     * Шарди, що виконують завдання в потоці виклику: бенчмарки викликають обробник з одного потоку,
+     * тож порядок завдань одного користувача зберігається.
+     */
+    private static final class DirectShardExecutor extends ShardExecutor {
+        DirectShardExecutor() {
+            super(1, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean tryExecute(String key, Runnable task) {
+            task.run();
+            return true;
+        }
+
+        @Override
+        public void execute(String key, Runnable task) {
+            task.run();
+        }
+    }
+
+    /**
+     * Відкрита сесія, яка відкидає все, що в неї записують, пам'ятаючи лише останній кадр.
+     */
+    static final class NullSession implements WebSocketSession {
+        private final String id;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private WebSocketMessage<?> last;
+
+        NullSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            last = message;
+        }
+
+        /**
+         * @return останній записаний кадр або null
+         */
+        WebSocketMessage<?> last() {
+            return last;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
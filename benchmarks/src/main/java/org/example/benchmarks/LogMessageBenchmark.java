@@ -0,0 +1,63 @@
+package org.example.benchmarks;
+
+import org.example.LogMessage;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Підготовка тіла повідомлення для журналу: розфарбування JSON і рядок, який отримує журнал
+ * через {@link LogMessage#payload} (з приховуванням і обрізанням, як у налаштуваннях за замовчуванням).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogMessageBenchmark {
+
+    @Param({"32", "4096"})
+    public int messageSize;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        LogMessage.configure(true, 256, List.of("message"));
+        json = new JSONObject()
+                .put("senderId", "alice")
+                .put("receiverId", "bob")
+                .put("operation", "message")
+                .put("message", "x".repeat(messageSize))
+                .put("messageId", "3f2b7c1e-0a4d-4c55-9d0e-8b1f6a2c9e71")
+                .toString();
+    }
+
+    @Benchmark
+    public String colorizeJson() {
+        return LogMessage.colorizeJson(json);
+    }
+
+    @Benchmark
+    public String renderPayload() {
+        return LogMessage.payload(json).toString();
+    }
+
+    @Benchmark
+    public Object payloadNotLogged() {
+        return LogMessage.payload(json);
+    }
+}
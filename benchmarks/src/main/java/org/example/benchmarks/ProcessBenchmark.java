@@ -0,0 +1,90 @@
+package org.example.benchmarks;
+
+import org.example.process.Packet;
+import org.example.process.Process;
+import org.example.process.StreamingEnvelopeCodec;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маршрутизація розібраного пакета в {@link Process#processMessage}: вибір дії за операцією
+ * і формування службових статусів. Обробник лише рахує виклики, тож вимірюється сам {@code Process}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessBenchmark {
+
+    @Param({"message", "delivered", "delivered_to_user", "handshake"})
+    public String kind;
+
+    private final WebSocketSession session = new Fixtures.NullSession("bench");
+    private final Counting listener = new Counting();
+    private final Process process = new Process(listener);
+    private Packet packet;
+
+    @Setup
+    public void setUp() {
+        JSONObject json = new JSONObject()
+                .put("senderId", "alice")
+                .put("receiverId", "bob")
+                .put("messageId", "3f2b7c1e-0a4d-4c55-9d0e-8b1f6a2c9e71");
+        switch (kind) {
+            case "message" -> json.put("operation", "message").put("message", "hello");
+            case "handshake" -> json.put("operation", "handshake").put("message", "{\"publicKey\":\"MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAE\"}");
+            default -> json.put("operation", "messageStatus").put("messageStatus", kind);
+        }
+        packet = Packet.parse(json.toString(), new StreamingEnvelopeCodec());
+    }
+
+    @Benchmark
+    public long processMessage() {
+        process.processMessage(session, packet);
+        return listener.calls;
+    }
+
+    private static final class Counting implements Process.ProcessMessage {
+        long calls;
+
+        @Override
+        public void sendMessage(String receiverId, Packet packet) {
+            calls++;
+        }
+
+        @Override
+        public void sendToSession(WebSocketSession session, Packet packet) {
+            calls++;
+        }
+
+        @Override
+        public void setMessageStatus(String userId, String messageId, String messageStatus) {
+            calls++;
+        }
+
+        @Override
+        public void deleteSaveMessages(String userId, String messageId) {
+            calls++;
+        }
+
+        @Override
+        public void onHandshake(String pairKey, String senderId, String receiverId, String publicKey) {
+            calls++;
+        }
+    }
+}
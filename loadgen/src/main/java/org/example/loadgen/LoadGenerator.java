@@ -0,0 +1,262 @@
+package org.example.loadgen;
+
+import org.example.WebSocketServerApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Навантажувальний тест сервера.
+ * <p>
+ * Без {@code --url} запускає {@link WebSocketServerApplication} у цьому ж процесі на випадковому порту
+ * і після завершення зупиняє його, тож тест не потребує зовнішніх сервісів. Клієнти підключаються поступово
+ * ({@code connect-rate}), після прогріву ({@code warmup-s}) лічильники скидаються і вимірювання триває
+ * {@code duration-s} секунд. Контакти кожного клієнта вибираються генератором з {@code seed}, тож запуски
+ * з тими самими параметрами відтворювані.
+ * <p>
+ * Параметри ({@code назва=значення} або {@code --назва=значення}):
+ * <ul>
+ *     <li>{@code clients} (1000) — кількість імітованих клієнтів;</li>
+ *     <li>{@code contacts} (20) — контактів у кожного клієнта;</li>
+ *     <li>{@code message-rate} (0.5) — повідомлень за секунду від одного клієнта;</li>
+ *     <li>{@code handshake-ratio} (0.02) — частка відправок, що є рукостисканням замість повідомлення;</li>
+ *     <li>{@code check-ms} (5000) — період CHECK_STATUS;</li>
+ *     <li>{@code check-contacts} (false) — надсилати контакти з кожним CHECK_STATUS;</li>
+ *     <li>{@code churn-rate} (0.1) — перепідключень одного клієнта за хвилину;</li>
+ *     <li>{@code reconnect-ms} (1000) — пауза між відключенням і новим підключенням;</li>
+ *     <li>{@code connect-rate} (500) — нових підключень за секунду під час старту;</li>
+ *     <li>{@code warmup-s} (10), {@code duration-s} (60), {@code report-s} (5);</li>
+ *     <li>{@code http-clients} (половина ядер) — HTTP-клієнтів, між якими розподіляються підключення;</li>
+ *     <li>{@code threads} (кількість ядер) — потоків, що виконують дії клієнтів;</li>
+ *     <li>{@code seed} (42);</li>
+ *     <li>{@code url} — адреса зовнішнього сервера, {@code path} (/ws) — шлях вбудованого.</li>
+ * </ul>
+ * Решта параметрів передається вбудованому серверу як властивості Spring, наприклад {@code --server-cube.store.type=log}.
+ */
+public final class LoadGenerator {
+
+    private static final Set<String> OPTIONS = Set.of("clients", "contacts", "message-rate", "handshake-ratio",
+            "check-ms", "check-contacts", "churn-rate", "reconnect-ms", "connect-rate", "warmup-s", "duration-s",
+            "report-s", "http-clients", "threads", "seed", "url", "path");
+    private static final String USER_PREFIX = "load-";
+
+    private final Map<String, String> options;
+    private final LoadStats stats = new LoadStats();
+    private final List<SimulatedClient> clients = new ArrayList<>();
+    private final List<HttpClient> httpClients = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final URI uri;
+
+    private LoadGenerator(Map<String, String> options, URI uri) {
+        this.options = options;
+        this.uri = uri;
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.scheduler = Executors.newScheduledThreadPool(intOption("threads", cores), runnable -> {
+            Thread thread = new Thread(runnable, "loadgen");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < intOption("http-clients", Math.max(1, cores / 2)); i++) {
+            httpClients.add(HttpClient.newHttpClient());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> serverArgs = new ArrayList<>(List.of(
+                "--server.port=0", "--spring.main.banner-mode=off", "--logging.level.org.example=WARN"));
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            String name = separator < 0 ? option : option.substring(0, separator);
+            if (OPTIONS.contains(name)) {
+                options.put(name, separator < 0 ? "true" : option.substring(separator + 1));
+            } else {
+                serverArgs.add(arg);
+            }
+        }
+
+        ConfigurableApplicationContext server = null;
+        String url = options.get("url");
+        if (url == null) {
+            server = SpringApplication.run(WebSocketServerApplication.class, serverArgs.toArray(String[]::new));
+            int port = ((WebServerApplicationContext) server).getWebServer().getPort();
+            url = "ws://localhost:" + port + options.getOrDefault("path", "/ws");
+        }
+        System.out.println("Target: " + url);
+
+        LoadGenerator generator = new LoadGenerator(options, URI.create(url));
+        try {
+            generator.run();
+        } finally {
+            generator.shutdown();
+            if (server != null) {
+                server.close();
+            }
+        }
+        // Підсумок — після зупинки, щоб його не перемішало з журналом закриття сесій
+        generator.stats.printSummary(System.out, generator.clients.size());
+        System.exit(0);
+    }
+
+    private void run() throws InterruptedException {
+        int count = intOption("clients", 1000);
+        createClients(count, intOption("contacts", 20), new Random(longOption("seed", 42)));
+        connectAll(intOption("connect-rate", 500));
+        schedule();
+
+        long warmup = intOption("warmup-s", 10);
+        long duration = intOption("duration-s", 60);
+        long report = intOption("report-s", 5);
+        TimeUnit.SECONDS.sleep(warmup);
+        stats.reset();
+        System.out.printf("Warm-up done, measuring for %ds%n", duration);
+        for (long elapsed = 0; elapsed < duration; ) {
+            long step = Math.min(report, duration - elapsed);
+            TimeUnit.SECONDS.sleep(step);
+            elapsed += step;
+            stats.printInterval(System.out, elapsed, online());
+        }
+    }
+
+    private void createClients(int count, int contacts, Random random) {
+        int perClient = Math.min(contacts, count - 1);
+        for (int i = 0; i < count; i++) {
+            Set<String> chosen = new LinkedHashSet<>();
+            while (chosen.size() < perClient) {
+                int contact = random.nextInt(count);
+                if (contact != i) {
+                    chosen.add(userId(contact));
+                }
+            }
+            clients.add(new SimulatedClient(userId(i), List.copyOf(chosen), booleanOption("check-contacts"), stats));
+        }
+    }
+
+    /**
+     * Підключає клієнтів не швидше за {@code rate} на секунду і чекає на завершення всіх підключень.
+     */
+    private void connectAll(int rate) throws InterruptedException {
+        long started = System.nanoTime();
+        List<CompletableFuture<Void>> connecting = new ArrayList<>(clients.size());
+        for (int i = 0; i < clients.size(); i++) {
+            long due = started + TimeUnit.SECONDS.toNanos(i) / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            connecting.add(connect(clients.get(i), i));
+        }
+        try {
+            CompletableFuture.allOf(connecting.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // Невдалі підключення вже пораховані як помилки
+        }
+        System.out.printf("Connected %d/%d clients in %.1fs%n", stats.connected.sum(), clients.size(), (System.nanoTime() - started) / 1e9);
+    }
+
+    private CompletableFuture<Void> connect(SimulatedClient client, int index) {
+        return client.connect(httpClients.get(index % httpClients.size()), uri).exceptionally(error -> {
+            stats.errors.increment();
+            return null;
+        });
+    }
+
+    /**
+     * Періодичні дії кожного клієнта. Початкові затримки випадкові, щоб клієнти не діяли синхронно.
+     */
+    private void schedule() {
+        long checkMillis = intOption("check-ms", 5000);
+        double messageRate = doubleOption("message-rate", 0.5);
+        double handshakeRatio = doubleOption("handshake-ratio", 0.02);
+        double churnRate = doubleOption("churn-rate", 0.1);
+        long reconnectMillis = intOption("reconnect-ms", 1000);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < clients.size(); i++) {
+            SimulatedClient client = clients.get(i);
+            int index = i;
+            scheduler.scheduleAtFixedRate(client::checkStatus, random.nextLong(checkMillis), checkMillis, TimeUnit.MILLISECONDS);
+            if (messageRate <= 0) {
+                continue;
+            }
+            long periodMicros = (long) (1_000_000 / messageRate);
+            // Імовірність перепідключення на одному такті, щоб у середньому виходило churn-rate за хвилину
+            double churnChance = churnRate / 60 / messageRate;
+            scheduler.scheduleAtFixedRate(() -> {
+                ThreadLocalRandom current = ThreadLocalRandom.current();
+                if (current.nextDouble() < churnChance && client.isRegistered()) {
+                    stats.reconnects.increment();
+                    client.disconnect().whenComplete((ignored, error) -> scheduler.schedule(
+                            () -> connect(client, index), reconnectMillis, TimeUnit.MILLISECONDS));
+                } else if (current.nextDouble() < handshakeRatio) {
+                    // Обидві сторони пари надсилають свої ключі, як клієнти при відкритті захищеного чату
+                    String partner = client.handshake();
+                    if (partner != null) {
+                        clients.get(index(partner)).handshake(client.userId());
+                    }
+                } else {
+                    client.sendMessage();
+                }
+            }, random.nextLong(periodMicros), periodMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private void shutdown() {
+        scheduler.shutdownNow();
+        CompletableFuture<?>[] closing = clients.stream().map(SimulatedClient::disconnect).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(closing).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // Сервер зупиняється слідом, незакриті підключення закриє він
+        }
+    }
+
+    private int online() {
+        return (int) clients.stream().filter(SimulatedClient::isRegistered).count();
+    }
+
+    private static String userId(int index) {
+        return USER_PREFIX + index;
+    }
+
+    private static int index(String userId) {
+        return Integer.parseInt(userId.substring(USER_PREFIX.length()));
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private long longOption(String name, long defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private boolean booleanOption(String name) {
+        return Boolean.parseBoolean(options.get(name));
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Лічильники та гістограми затримок навантажувального тесту. Запис з будь-якого потоку без блокувань.
+ * <p>
+ * Затримка доставки включає час, який повідомлення пролежало в офлайн-сховищі, поки отримувач перепідключався,
+ * тож її хвіст залежить від {@code churn-rate} і {@code reconnect-ms}.
+ * <p>
+ * Затримки зберігаються в мікросекундах. Звіт за інтервал забирає накопичене з {@link Recorder},
+ * підсумок складається з усіх інтервалів після прогріву.
+ */
+final class LoadStats {
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder reconnects = new LongAdder();
+    final LongAdder registerFailed = new LongAdder();
+    final LongAdder messagesSent = new LongAdder();
+    final LongAdder messagesReceived = new LongAdder();
+    final LongAdder acksSent = new LongAdder();
+    final LongAdder handshakesSent = new LongAdder();
+    final LongAdder handshakesReceived = new LongAdder();
+    final LongAdder presenceFrames = new LongAdder();
+    final LongAdder checks = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    private final Metric delivery = new Metric("delivery");      // відправка клієнтом -> отримання адресатом
+    private final Metric serverAck = new Metric("server-ack");   // відправка клієнтом -> статус "server"
+    private final Metric checkStatus = new Metric("check-status"); // CHECK_STATUS -> REGISTER_OK
+
+    private long intervalStart = System.nanoTime();
+    private long totalStart = intervalStart;
+    private long totalSent;
+    private long totalReceived;
+
+    void delivered(long sentNanos) {
+        delivery.recorder.recordValue(micros(sentNanos));
+    }
+
+    void serverAcked(long sentNanos) {
+        serverAck.recorder.recordValue(micros(sentNanos));
+    }
+
+    void checked(long sentNanos) {
+        checkStatus.recorder.recordValue(micros(sentNanos));
+    }
+
+    /**
+     * Кінець прогріву: накопичене до цього моменту відкидається.
+     */
+    synchronized void reset() {
+        for (Metric metric : metrics()) {
+            metric.recorder.reset();
+            metric.total.reset();
+        }
+        messagesSent.reset();
+        messagesReceived.reset();
+        totalSent = 0;
+        totalReceived = 0;
+        intervalStart = System.nanoTime();
+        totalStart = intervalStart;
+    }
+
+    /**
+     * Друкує рядок за інтервал від попереднього виклику і додає інтервал до підсумку.
+     */
+    synchronized void printInterval(PrintStream out, long elapsedSeconds, int online) {
+        long now = System.nanoTime();
+        double seconds = (now - intervalStart) / 1e9;
+        intervalStart = now;
+        long sent = messagesSent.sumThenReset();
+        long received = messagesReceived.sumThenReset();
+        totalSent += sent;
+        totalReceived += received;
+        Histogram interval = delivery.collect();
+        serverAck.collect();
+        checkStatus.collect();
+        out.printf("[%4ds] online=%d sent/s=%.0f received/s=%.0f delivery p50=%.2fms p99=%.2fms max=%.2fms errors=%d%n",
+                elapsedSeconds, online, sent / seconds, received / seconds,
+                millis(interval, 50), millis(interval, 99), interval.getMaxValue() / 1000.0, errors.sum());
+    }
+
+    /**
+     * Друкує підсумок за інтервали, надруковані після прогріву.
+     */
+    synchronized void printSummary(PrintStream out, int clients) {
+        double seconds = Math.max(1e-9, (intervalStart - totalStart) / 1e9);
+        out.println();
+        out.printf("clients=%d measured=%.1fs%n", clients, seconds);
+        out.printf("messages: sent=%d received=%d (%.1f%%) throughput sent=%.0f/s received=%.0f/s%n",
+                totalSent, totalReceived, totalSent == 0 ? 0.0 : 100.0 * totalReceived / totalSent,
+                totalSent / seconds, totalReceived / seconds);
+        out.printf("acks=%d handshakes sent=%d received=%d presence=%d checks=%d%n",
+                acksSent.sum(), handshakesSent.sum(), handshakesReceived.sum(), presenceFrames.sum(), checks.sum());
+        out.printf("connects=%d reconnects=%d register-failed=%d errors=%d%n",
+                connected.sum(), reconnects.sum(), registerFailed.sum(), errors.sum());
+        out.printf("%-13s %8s %9s %9s %9s %9s %9s%n", "latency(ms)", "count", "p50", "p99", "p999", "max", "mean");
+        for (Metric metric : metrics()) {
+            Histogram total = metric.total;
+            out.printf("%-13s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", metric.name, total.getTotalCount(),
+                    millis(total, 50), millis(total, 99), millis(total, 99.9), total.getMaxValue() / 1000.0, total.getMean() / 1000.0);
+        }
+    }
+
+    private Metric[] metrics() {
+        return new Metric[]{delivery, serverAck, checkStatus};
+    }
+
+    private static long micros(long sentNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos));
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Гістограма однієї затримки: поточний інтервал і сума інтервалів.
+     */
+    private static final class Metric {
+        private final String name;
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+
+        private Metric(String name) {
+            this.name = name;
+        }
+
+        private Histogram collect() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return interval;
+        }
+    }
+}
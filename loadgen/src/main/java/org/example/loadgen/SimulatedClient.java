@@ -0,0 +1,283 @@
+package org.example.loadgen;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Імітований клієнт: одне WebSocket-підключення одного користувача.
+ * <p>
+ * Поводиться як мобільний клієнт: реєструється, періодично надсилає {@code CHECK_STATUS},
+ * надсилає повідомлення контактам, підтверджує доставку отриманих ({@code delivered}),
+ * іноді обмінюється ключами рукостискання. Час відправки передається в тексті повідомлення,
+ * тож затримку доставки вимірює отримувач (сервер і клієнти в одному процесі — годинник спільний).
+ * <p>
+ * {@link WebSocket} не дозволяє починати наступну відправку до завершення попередньої,
+ * тому відправки одного клієнта шикуються в ланцюжок.
+ */
+final class SimulatedClient implements WebSocket.Listener {
+
+    private static final String REGISTER = "REGISTER:";
+    private static final String CHECK_STATUS = "CHECK_STATUS:";
+    private static final String REGISTER_OK = "REGISTER_OK:";
+    private static final String REGISTER_FAILED = "REGISTER_FAILED";
+    private static final String PRESENCE = "PRESENCE:";
+    private static final String SENT_AT = "t=";
+
+    private final String userId;
+    private final List<String> contacts;
+    private final String contactsJson;
+    private final boolean checkContacts;
+    private final LoadStats stats;
+    private final Map<String, Long> awaitingServerAck = new ConcurrentHashMap<>(); // messageId -> час відправки
+    private final StringBuilder partial = new StringBuilder();
+    private CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+    private volatile WebSocket socket;
+    private volatile boolean registered;
+    private volatile boolean registering; // REGISTER надіслано, відповіді ще немає
+    private volatile long checkSentAt;
+    private long sequence;
+
+    /**
+     * @param checkContacts true — надсилати контакти з кожним CHECK_STATUS (старі клієнти без PRESENCE)
+     */
+    SimulatedClient(String userId, List<String> contacts, boolean checkContacts, LoadStats stats) {
+        this.userId = userId;
+        this.contacts = contacts;
+        this.contactsJson = new JSONArray(contacts).toString();
+        this.checkContacts = checkContacts;
+        this.stats = stats;
+    }
+
+    String userId() {
+        return userId;
+    }
+
+    boolean isRegistered() {
+        return registered;
+    }
+
+    /**
+     * Підключається і реєструється.
+     */
+    CompletableFuture<Void> connect(HttpClient http, URI uri) {
+        return http.newWebSocketBuilder().buildAsync(uri, this).thenAccept(webSocket -> {
+            synchronized (this) {
+                socket = webSocket;
+                sending = CompletableFuture.completedFuture(null);
+            }
+            stats.connected.increment();
+            register();
+        });
+    }
+
+    void register() {
+        registering = true;
+        send(REGISTER + new JSONObject().put("userId", userId).put("life", "online").put("contacts", contactsJson));
+    }
+
+    /**
+     * Надсилає пінг. Клієнт, якому сервер відмовив у реєстрації, замість пінгу повторює {@code REGISTER}.
+     */
+    void checkStatus() {
+        if (!registered) {
+            if (socket != null && !registering) {
+                register();
+            }
+            return;
+        }
+        JSONObject json = new JSONObject().put("userId", userId).put("life", "online");
+        if (checkContacts) {
+            json.put("contacts", contactsJson);
+        }
+        checkSentAt = System.nanoTime();
+        stats.checks.increment();
+        send(CHECK_STATUS + json);
+    }
+
+    void sendMessage() {
+        if (!registered) {
+            return;
+        }
+        String receiverId = contacts.get(ThreadLocalRandom.current().nextInt(contacts.size()));
+        String messageId = userId + "-" + nextSequence();
+        long now = System.nanoTime();
+        awaitingServerAck.put(messageId, now);
+        stats.messagesSent.increment();
+        send(envelope(receiverId, "message", messageId).put("message", SENT_AT + now).toString());
+    }
+
+    /**
+     * Надсилає ключ випадковому контакту.
+     *
+     * @return ідентифікатор контакту або null, якщо клієнт не зареєстрований
+     */
+    String handshake() {
+        if (!registered) {
+            return null;
+        }
+        String receiverId = contacts.get(ThreadLocalRandom.current().nextInt(contacts.size()));
+        handshake(receiverId);
+        return receiverId;
+    }
+
+    /**
+     * Надсилає ключ вказаному користувачу. Сервер пересилає ключі, коли їх надіслали обидві сторони пари.
+     */
+    void handshake(String receiverId) {
+        if (!registered) {
+            return;
+        }
+        String publicKey = userId + "-key-" + nextSequence();
+        stats.handshakesSent.increment();
+        send(envelope(receiverId, "handshake", "")
+                .put("message", new JSONObject().put("publicKey", publicKey).toString()).toString());
+    }
+
+    /**
+     * Закриває підключення. Неотримані підтвердження "server" більше не очікуються.
+     */
+    CompletableFuture<?> disconnect() {
+        WebSocket webSocket;
+        synchronized (this) {
+            webSocket = socket;
+            socket = null;
+            registered = false;
+            registering = false;
+        }
+        awaitingServerAck.clear();
+        if (webSocket == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "bye").exceptionally(e -> null);
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String frame = partial.toString();
+            partial.setLength(0);
+            try {
+                handle(frame);
+            } catch (RuntimeException e) {
+                stats.errors.increment();
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        closed(webSocket);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        stats.errors.increment();
+        closed(webSocket);
+    }
+
+    private void handle(String frame) {
+        if (frame.startsWith(REGISTER_OK)) {
+            long sentAt = checkSentAt;
+            if (registered && sentAt != 0) {
+                checkSentAt = 0;
+                stats.checked(sentAt);
+            }
+            registered = true;
+            registering = false;
+        } else if (frame.startsWith(REGISTER_FAILED)) {
+            // Попереднє підключення ще не прибране сервером: клієнт лишається незареєстрованим і повторить REGISTER з наступним пінгом
+            stats.registerFailed.increment();
+            registering = false;
+        } else if (frame.startsWith(PRESENCE)) {
+            stats.presenceFrames.increment();
+        } else if (frame.startsWith("[")) {
+            // Статуси, об'єднані сервером в один кадр
+            JSONArray envelopes = new JSONArray(frame);
+            for (int i = 0; i < envelopes.length(); i++) {
+                handleEnvelope(envelopes.getJSONObject(i));
+            }
+        } else if (frame.startsWith("{")) {
+            handleEnvelope(new JSONObject(frame));
+        }
+    }
+
+    private void handleEnvelope(JSONObject json) {
+        switch (json.optString("operation")) {
+            case "message" -> {
+                stats.messagesReceived.increment();
+                String message = json.optString("message");
+                if (message.startsWith(SENT_AT)) {
+                    stats.delivered(Long.parseLong(message.substring(SENT_AT.length())));
+                }
+                stats.acksSent.increment();
+                send(envelope(json.optString("senderId"), "messageStatus", json.optString("messageId"))
+                        .put("messageStatus", "delivered").toString());
+            }
+            case "messageStatus" -> {
+                if ("server".equals(json.optString("messageStatus"))) {
+                    Long sentAt = awaitingServerAck.remove(json.optString("messageId"));
+                    if (sentAt != null) {
+                        stats.serverAcked(sentAt);
+                    }
+                }
+            }
+            case "handshake" -> stats.handshakesReceived.increment();
+            default -> {
+            }
+        }
+    }
+
+    private JSONObject envelope(String receiverId, String operation, String messageId) {
+        return new JSONObject()
+                .put("senderId", userId)
+                .put("receiverId", receiverId)
+                .put("operation", operation)
+                .put("messageId", messageId);
+    }
+
+    private synchronized void send(String text) {
+        WebSocket webSocket = socket;
+        if (webSocket == null) {
+            return;
+        }
+        sending = sending
+                .thenCompose(ignored -> webSocket.sendText(text, true))
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        stats.errors.increment();
+                    }
+                    return null;
+                });
+    }
+
+    private synchronized long nextSequence() {
+        return sequence++;
+    }
+
+    private synchronized void closed(WebSocket webSocket) {
+        if (socket == webSocket) {
+            socket = null;
+            registered = false;
+            registering = false;
+        }
+    }
+}
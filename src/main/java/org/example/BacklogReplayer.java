@@ -0,0 +1,243 @@
+package org.example;
+
+import org.example.process.Packet;
+import org.example.process.Process;
+import org.example.store.OfflineMessageStore;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Відтворення збережених повідомлень користувачу після підключення.
+ * <p>
+ * Повідомлення читаються зі сховища сторінками у порядку збереження і відправляються вікном:
+ * одночасно без підтвердження доставки може бути не більше {@code window} повідомлень, наступні
+ * відправляються лише після підтверджень. Підтверджені повідомлення видаляються зі сховища, тож
+ * нове відтворення (після перепідключення) продовжує з першого непідтвердженого. Відтворення
+ * не дописує повідомлення в сховище повторно — вони там уже є.
+ * <p>
+ * Поки відтворення триває, нові повідомлення користувачу дописуються в кінець сховища
+ * ({@link #isActive(String)}) і відправляються після старих, тож порядок зберігається.
+ * <p>
+ * Для сесії окремо відстежується, що вже відправлено і чекає на підтвердження: відтворені повідомлення
+ * та повідомлення, відправлені наживо ({@link #onDelivered}). Повторне відтворення в тій самій сесії
+ * (кожен CHECK_STATUS) їх пропускає; лише сесія без підтверджень довше за {@code idleTimeoutMillis}
+ * отримує непідтверджене заново. Весь стан змінюється лише в шарді користувача, без блокувань.
+ */
+public class BacklogReplayer {
+
+    private final OfflineMessageStore store;
+    private final ShardExecutor shards;
+    private final int pageSize;
+    private final int window;
+    private final long idleTimeoutMillis;
+    private final Map<String, Replay> replays = new ConcurrentHashMap<>(); // userId -> активне відтворення
+    private volatile Sender sender;
+
+    /**
+     * @param pageSize          скільки повідомлень читається зі сховища за раз
+     * @param window            скільки повідомлень може чекати на підтвердження одночасно
+     * @param idleTimeoutMillis після скількох мілісекунд без підтверджень відтворення вважається завислим
+     */
+    public BacklogReplayer(OfflineMessageStore store, ShardExecutor shards, int pageSize, int window, long idleTimeoutMillis) {
+        this.store = store;
+        this.shards = shards;
+        this.pageSize = pageSize;
+        this.window = window;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @param sender відправляє повідомлення у сесію
+     */
+    public void start(Sender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Запускає відтворення для користувача. Якщо відтворення для цієї сесії вже триває,
+     * воно не починається заново, а лише продовжується (наприклад, після того, як у сховище додано нове повідомлення).
+     *
+     * @param userId  ідентифікатор користувача
+     * @param session WebSocket-сесія користувача
+     */
+    public void replay(String userId, WebSocketSession session) {
+        shards.execute(userId, () -> {
+            Replay current = replays.get(userId);
+            if (current == null || current.session != session || current.isIdle(System.currentTimeMillis())) {
+                current = new Replay(userId, session);
+                replays.put(userId, current);
+            }
+            current.draining = true;
+            pump(current);
+        });
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return true, якщо для користувача триває відтворення і нові повідомлення треба ставити в кінець сховища
+     */
+    public boolean isActive(String userId) {
+        Replay replay = replays.get(userId);
+        return replay != null && replay.draining && !replay.isIdle(System.currentTimeMillis());
+    }
+
+    /**
+     * Повідомлення відправлене в сесію наживо і збережене до підтвердження: відтворення в цій сесії його не повторює.
+     *
+     * @param userId  ідентифікатор користувача
+     * @param session WebSocket-сесія, в яку записане повідомлення
+     * @param key     ключ повідомлення ({@link OfflineMessageStore#keyOf})
+     */
+    public void onDelivered(String userId, WebSocketSession session, String key) {
+        shards.execute(userId, () -> {
+            Replay replay = replays.get(userId);
+            if (replay == null || replay.session != session) {
+                replay = new Replay(userId, session);
+                replays.put(userId, replay);
+            }
+            replay.delivered.add(key);
+        });
+    }
+
+    /**
+     * Користувач підтвердив доставку: звільняється місце у вікні.
+     *
+     * @param userId ідентифікатор користувача
+     * @param key    ключ повідомлення ({@link OfflineMessageStore#keyOf})
+     */
+    public void onAck(String userId, String key) {
+        shards.execute(userId, () -> {
+            Replay replay = replays.get(userId);
+            if (replay == null) {
+                return;
+            }
+            if (replay.inFlight.remove(key)) {
+                replay.touch();
+                pump(replay);
+            } else if (replay.delivered.remove(key)) {
+                replay.touch();
+                retireIfDone(replay);
+            } else {
+                replay.pending.remove(key); // Підтверджене ще до відправки — не відправляємо
+            }
+        });
+    }
+
+    /**
+     * Зупиняє відтворення після закриття сесії. Невідправлене лишається в сховищі.
+     */
+    public void stop(String userId, WebSocketSession session) {
+        shards.execute(userId, () -> {
+            Replay replay = replays.get(userId);
+            if (replay != null && replay.session == session) {
+                replays.remove(userId, replay);
+            }
+        });
+    }
+
+    public int size() {
+        return replays.size();
+    }
+
+    private void pump(Replay replay) {
+        while (replays.get(replay.userId) == replay && replay.draining && replay.inFlight.size() < window) {
+            if (replay.pending.isEmpty()) {
+                List<Packet> page = store.page(replay.userId, replay::isClaimed, pageSize);
+                for (Packet packet : page) {
+                    replay.pending.put(OfflineMessageStore.keyOf(packet), packet);
+                }
+                if (page.isEmpty()) {
+                    replay.draining = false;
+                    retireIfDone(replay);
+                    return;
+                }
+            }
+
+            Iterator<Map.Entry<String, Packet>> next = replay.pending.entrySet().iterator();
+            Map.Entry<String, Packet> entry = next.next();
+            next.remove();
+            String key = entry.getKey();
+            Packet packet = entry.getValue();
+            replay.inFlight.add(key);
+            boolean queued = sender.send(replay.session, packet,
+                    error -> shards.execute(replay.userId, () -> onWritten(replay, key, packet, error)));
+            if (!queued) {
+                // Черга сесії переповнена або закрита — продовжимо при наступному підключенні
+                replays.remove(replay.userId, replay);
+                return;
+            }
+        }
+    }
+
+    private void onWritten(Replay replay, String key, Packet packet, Exception error) {
+        if (error != null) {
+            replays.remove(replay.userId, replay);
+            return;
+        }
+        replay.touch();
+        if (!Process.expectsAck(packet)) {
+            // Статуси та ключі рукостискання не підтверджуються — записане вважається доставленим
+            store.remove(replay.userId, key);
+            replay.inFlight.remove(key);
+            pump(replay);
+        }
+    }
+
+    /**
+     * Стан сесії, коли відтворювати більше нічого і ніщо не чекає на підтвердження, не потрібен.
+     */
+    private void retireIfDone(Replay replay) {
+        if (!replay.draining && replay.inFlight.isEmpty() && replay.delivered.isEmpty()) {
+            replays.remove(replay.userId, replay);
+        }
+    }
+
+    /**
+     * Стан доставки збережених повідомлень у сесію одного користувача. Змінюється лише в шарді користувача.
+     */
+    private final class Replay {
+        private final String userId;
+        private final WebSocketSession session;
+        private final Set<String> inFlight = new HashSet<>();                 // відтворені, ще не підтверджені (займають вікно)
+        private final Set<String> delivered = new HashSet<>();                // відправлені наживо, ще не підтверджені
+        private final LinkedHashMap<String, Packet> pending = new LinkedHashMap<>(); // прочитані, ще не відправлені
+        private volatile boolean draining;                                    // у сховищі ще можуть бути невідправлені
+        private volatile long lastProgress = System.currentTimeMillis();
+
+        private Replay(String userId, WebSocketSession session) {
+            this.userId = userId;
+            this.session = session;
+        }
+
+        private boolean isClaimed(String key) {
+            return inFlight.contains(key) || delivered.contains(key) || pending.containsKey(key);
+        }
+
+        private void touch() {
+            lastProgress = System.currentTimeMillis();
+        }
+
+        // Читається і з інших потоків, тому залежить лише від volatile-поля
+        private boolean isIdle(long now) {
+            return now - lastProgress > idleTimeoutMillis;
+        }
+    }
+
+    /**
+     * Відправка повідомлення відтворення у сесію.
+     */
+    public interface Sender {
+
+        /**
+         * @return false, якщо повідомлення не прийняте в чергу сесії
+         */
+        boolean send(WebSocketSession session, Packet packet, OutboundMailbox.Callback callback);
+    }
+}
@@ -0,0 +1,56 @@
+package org.example;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Бінарний протокол для клієнтів, підключених до {@code /ws-bin}.
+ * <p>
+ * Перший байт кадру визначає його тип:
+ * <ul>
+ *     <li>{@link #ENVELOPE} — конверт повідомлення, закодований {@link org.example.process.BinaryEnvelopeCodec};</li>
+ *     <li>{@link #CONTROL} — службовий текст у UTF-8 ({@code REGISTER:...}, {@code CHECK_STATUS:...}, {@code REGISTER_OK:...}, {@code PRESENCE:...}).</li>
+ * </ul>
+ */
+public final class BinaryFrames {
+
+    public static final byte ENVELOPE = 0x01;
+    public static final byte CONTROL = 0x02;
+
+    // Атрибут сесії, що позначає бінарний режим; встановлюється при рукостисканні на /ws-bin
+    public static final String FRAMING_ATTRIBUTE = "framing";
+    public static final String BINARY = "binary";
+
+    private BinaryFrames() {
+    }
+
+    public static boolean isBinary(WebSocketSession session) {
+        return BINARY.equals(session.getAttributes().get(FRAMING_ATTRIBUTE));
+    }
+
+    public static BinaryMessage envelope(byte[] encoded) {
+        return frame(ENVELOPE, encoded);
+    }
+
+    public static BinaryMessage control(String text) {
+        return frame(CONTROL, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param payload тіло службового кадру (позиція — після байта типу)
+     * @return текст службового повідомлення
+     */
+    public static String readControl(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload).toString();
+    }
+
+    private static BinaryMessage frame(byte kind, byte[] body) {
+        byte[] frame = new byte[body.length + 1];
+        frame[0] = kind;
+        System.arraycopy(body, 0, frame, 1, body.length);
+        return new BinaryMessage(frame);
+    }
+}
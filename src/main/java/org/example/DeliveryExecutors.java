@@ -0,0 +1,81 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фабрика виконавців для доставки повідомлень та обробки рукостискань.
+ * <p>
+ * Режим {@code platform} — пул фіксованого розміру зі звичайних потоків.
+ * Режим {@code virtual} — окремий віртуальний потік на кожне завдання (JDK 21+),
+ * тож блокуючий запис у WebSocket не виснажує пул навіть для десятків тисяч отримувачів.
+ */
+public final class DeliveryExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryExecutors.class);
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private DeliveryExecutors() {
+    }
+
+    /**
+     * Створює виконавця за назвою режиму.
+     *
+     * @param mode     {@code platform} або {@code virtual}
+     * @param poolSize розмір пулу для режиму {@code platform}
+     * @return виконавець завдань доставки
+     */
+    public static ExecutorService create(String mode, int poolSize) {
+        String normalized = mode == null ? PLATFORM : mode.trim().toLowerCase(Locale.ROOT);
+        if (VIRTUAL.equals(normalized)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) {
+                logger.info("Delivery executor: virtual threads");
+                return virtual;
+            }
+            logger.warn("Virtual threads are not available on Java {}, falling back to a platform pool of {} threads",
+                    Runtime.version().feature(), poolSize);
+        } else if (!PLATFORM.equals(normalized)) {
+            throw new IllegalArgumentException("Unknown executor mode: " + mode);
+        }
+        logger.info("Delivery executor: platform pool of {} threads", poolSize);
+        return Executors.newFixedThreadPool(poolSize, new NamedThreadFactory("delivery-"));
+    }
+
+    /**
+     * Проєкт компілюється під Java 17, тому фабрика віртуальних потоків викликається через рефлексію
+     * і доступна лише при запуску на JDK 21+.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,6 +1,23 @@
 package org.example;
 
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Шаблони повідомлень журналу.
+ * <p>
+ * Тіла повідомлень потрапляють у журнал через {@link #payload(String)}, окремі значення (наприклад, ключі) —
+ * через {@link #field(String, String)}: текст формується лише тоді, коли
+ * рівень журналу ввімкнено, чутливі поля приховуються, довгі тіла обрізаються, а розфарбування
+ * ({@link #configure}) можна вимкнути. Часті події можна записувати вибірково ({@link #sampled()}),
+ * тож вартість журналу не зростає разом із розміром повідомлень і частотою пінгів.
+ */
 public enum LogMessage {
     MESSAGE_DELIVERED("Message delivered. Message ID: \u001B[34m{}\u001B[0m"),
     HANDSHAKE("HANDSHAKE. sender ID: \u001B[33m{}\u001B[0m receiver ID: \u001B[36m{}\u001B[0m"),
@@ -22,24 +39,146 @@ public enum LogMessage {
     SUCCESSFUL("Registration successful! ID: \u001B[31m{}\u001B[0m"),
     CHECK_CONTACTS("Check contact! Array ID: \u001B[31m{}\u001B[0m"),
     ERROR_SENDING_MESSAGE("Error sending message: {}"),
+    SHARD_FULL("Shard queue full, message rejected from: \u001B[31m{}\u001B[0m"),
+    MAILBOX_FULL("Outbound queue full, message not queued for: \u001B[31m{}\u001B[0m"),
     NOT_CONNECTED_OR_CLOSE("Client not connected or socket closed ID: \u001B[31m{}\u001B[0m"),
     REGISTRATION_FILED("Registration failed: Invalid or duplicate client ID. \u001B[31m{}\u001B[0m"),
     DELETE_MESSAGE("Dell message   : \u001B[31m{}\u001B[0m \u001B[36m{}\u001B[0m");
 
+    private static final Pattern JSON_KEY = Pattern.compile("(\"[^\"]+\"):");
+    private static final Pattern JSON_STRING = Pattern.compile(":\\s*(\"[^\"]+\")");
+    private static final Pattern JSON_NUMBER = Pattern.compile(":\\s*(\\d+)");
+
+    private static volatile boolean colorize = true;
+    private static volatile int payloadMaxChars = Integer.MAX_VALUE;
+    private static volatile Pattern redacted; // null — нічого не приховується
+    private static volatile Set<String> redactedFields = Set.of();
+
     private final String message;
+    private final String plainMessage;
+    private final AtomicLong occurrences = new AtomicLong();
+    private volatile int sampleEvery = 1;
 
     LogMessage(String message) {
         this.message = message;
+        this.plainMessage = message.replaceAll("\u001B\\[[0-9;]*m", ""); // Той самий шаблон без ANSI-кольорів
     }
 
     public String getMessage() {
-        return message;
+        return colorize ? message : plainMessage;
+    }
+
+    /**
+     * Вибірковий запис частих подій: повертає true для кожної {@code sampleEvery}-ї події цього типу.
+     *
+     * @return true, якщо подію треба записати
+     */
+    public boolean sampled() {
+        int every = sampleEvery;
+        return every <= 1 || occurrences.getAndIncrement() % every == 0;
+    }
+
+    /**
+     * Налаштовує вигляд повідомлень журналу.
+     *
+     * @param colorize        розфарбовувати шаблони і тіла повідомлень ANSI-кольорами
+     * @param payloadMaxChars скільки символів тіла повідомлення записується (0 — тіло не записується)
+     * @param redactFields    поля JSON, значення яких замінюються на {@code ***}
+     */
+    public static void configure(boolean colorize, int payloadMaxChars, Collection<String> redactFields) {
+        LogMessage.colorize = colorize;
+        LogMessage.payloadMaxChars = payloadMaxChars;
+        List<String> fields = redactFields.stream().map(String::trim).filter(field -> !field.isEmpty()).toList();
+        LogMessage.redactedFields = Set.copyOf(fields);
+        LogMessage.redacted = fields.isEmpty() ? null : Pattern.compile("(\"(?:"
+                + fields.stream().map(Pattern::quote).collect(Collectors.joining("|"))
+                + ")\"\\s*:\\s*)\"(?:[^\"\\\\]|\\\\.)*\"");
+    }
+
+    /**
+     * Налаштовує вибірковий запис: {@code ТИП:N} через кому, наприклад {@code CHECK_CONTACTS:100,SAVE_MESSAGE:10}
+     * (кожна сота перевірка контактів і кожне десяте збереження). Типи, яких немає в списку, записуються завжди.
+     *
+     * @param spec налаштування вибірки (може бути порожнім)
+     */
+    public static void configureSampling(String spec) {
+        for (LogMessage type : values()) {
+            type.sampleEvery = 1;
+        }
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid log sampling entry: " + entry);
+            }
+            valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_')).sampleEvery = Integer.parseInt(parts[1].trim());
+        }
+    }
+
+    /**
+     * Тіло повідомлення для запису в журнал. Текст формується лише при записі
+     * (через {@code toString()}), тож вимкнений рівень журналу нічого не коштує.
+     *
+     * @param json тіло повідомлення
+     * @return аргумент для шаблону журналу
+     */
+    public static Object payload(String json) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return render(json);
+            }
+        };
+    }
+
+    /**
+     * Окреме значення поля для запису в журнал: приховується, якщо поле є серед {@code redactFields},
+     * і обрізається так само, як тіло повідомлення. Текст формується лише при записі.
+     *
+     * @param name  назва поля, наприклад {@code publicKey}
+     * @param value значення
+     * @return аргумент для шаблону журналу
+     */
+    public static Object field(String name, String value) {
+        return new Object() {
+            @Override
+            public String toString() {
+                if (value == null) {
+                    return "null";
+                }
+                if (redactedFields.contains(name)) {
+                    return "***";
+                }
+                int maxChars = payloadMaxChars;
+                if (maxChars <= 0) {
+                    return "(" + value.length() + " chars)";
+                }
+                return value.length() > maxChars ? value.substring(0, maxChars) + "...(" + value.length() + " chars)" : value;
+            }
+        };
     }
 
     public static String colorizeJson(String json) {
-        json = json.replaceAll("(\"[^\"]+\"):", "\u001B[36m$1\u001B[0m:"); // Блакитний для ключів
-        json = json.replaceAll(":\\s*(\"[^\"]+\")", ": \u001B[33m$1\u001B[0m"); // Жовтий для рядкових значень
-        json = json.replaceAll(":\\s*(\\d+)", ": \u001B[32m$1\u001B[0m"); // Зелений для чисел
+        json = JSON_KEY.matcher(json).replaceAll("\u001B[36m$1\u001B[0m:"); // Блакитний для ключів
+        json = JSON_STRING.matcher(json).replaceAll(": \u001B[33m$1\u001B[0m"); // Жовтий для рядкових значень
+        json = JSON_NUMBER.matcher(json).replaceAll(": \u001B[32m$1\u001B[0m"); // Зелений для чисел
         return json;
     }
+
+    private static String render(String json) {
+        int maxChars = payloadMaxChars;
+        if (maxChars <= 0) {
+            return "(" + json.length() + " chars)";
+        }
+        Pattern fields = redacted;
+        if (fields != null) {
+            json = fields.matcher(json).replaceAll("$1\"***\"");
+        }
+        if (json.length() > maxChars) {
+            json = json.substring(0, maxChars) + "...(" + json.length() + " chars)";
+        }
+        return colorize ? colorizeJson(json) : json;
+    }
 }
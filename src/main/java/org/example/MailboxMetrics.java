@@ -0,0 +1,59 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Лічильники вихідних черг усіх сесій: скільки даних зараз чекає на відправку
+ * і як часто спрацьовують обмеження для повільних клієнтів.
+ */
+public class MailboxMetrics {
+
+    final AtomicLong queuedMessages = new AtomicLong();
+    final AtomicLong queuedBytes = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    final AtomicLong droppedStatus = new AtomicLong();
+    final AtomicLong sendTimeExceeded = new AtomicLong();
+    final AtomicLong closedSessions = new AtomicLong();
+
+    /**
+     * @return кількість повідомлень, що зараз чекають на відправку
+     */
+    public long queuedMessages() {
+        return queuedMessages.get();
+    }
+
+    /**
+     * @return обсяг повідомлень (у байтах або символах payload), що зараз чекають на відправку
+     */
+    public long queuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * @return скільки повідомлень не прийнято в чергу (і збережено як офлайн-повідомлення)
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return скільки статусних повідомлень відкинуто, щоб звільнити місце
+     */
+    public long droppedStatus() {
+        return droppedStatus.get();
+    }
+
+    /**
+     * @return скільки разів клієнт не встиг прийняти кадр за дозволений час
+     */
+    public long sendTimeExceeded() {
+        return sendTimeExceeded.get();
+    }
+
+    /**
+     * @return скільки сесій закрито як повільних
+     */
+    public long closedSessions() {
+        return closedSessions.get();
+    }
+}
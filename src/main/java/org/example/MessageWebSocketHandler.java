@@ -1,52 +1,101 @@
 package org.example;
 
+import org.example.cluster.ClusterBus;
+import org.example.cluster.UserDirectory;
+import org.example.presence.PresenceSubscriptions;
+import org.example.presence.PresenceTracker;
+import org.example.process.BinaryEnvelopeCodec;
+import org.example.process.EnvelopeCodec;
 import org.example.process.HandshakeKeyGen;
+import org.example.process.OperationType;
+import org.example.process.Packet;
 import org.example.process.Process;
+import org.example.store.HandshakeKeyStore;
+import org.example.store.MessageStatusTable;
+import org.example.store.OfflineMessageStore;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.socket.*;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
-public class MessageWebSocketHandler extends TextWebSocketHandler implements Process.ProcessMessage, HandshakeKeyGen.HandshakeListener {
+public class MessageWebSocketHandler extends AbstractWebSocketHandler implements Process.ProcessMessage, HandshakeKeyGen.HandshakeListener, ClusterBus.Listener {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageWebSocketHandler.class);
     private static final String REGISTER = "REGISTER:";
     private static final String REGISTER_OK = "REGISTER_OK";
     private static final String CHECK_STATUS = "CHECK_STATUS:";
     private static final String REGISTER_FAILED = "REGISTER_FAILED";
+    private static final String PRESENCE = "PRESENCE:";
+    private static final long FORWARD_ACK_TIMEOUT_MILLIS = 30_000; // Після цього непідтверджене пересилання повторюється
 
-    private final Map<String, WebSocketSession> clients;
-    private final Map<String, List<String>> saveMessages;
+    private final SessionRegistry sessions;
+    private final OfflineMessageStore offlineStore;
     private final Map<String, String> clientStatus;
-    private final Map<String, String> clientsKey;
-
-    private final Map<String, String> messageStatusInfo = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastPingTime = new ConcurrentHashMap<>();
-
-    public MessageWebSocketHandler(Map<String, WebSocketSession> clients, Map<String, List<String>> saveMessages, Map<String, String> clientStatus, Map<String, String> clientsKey) {
-        this.clients = clients;
-        this.saveMessages = saveMessages;
+    private final HandshakeKeyStore handshakeKeys; // Відкриті ключі рукостискання пар користувачів
+
+    private final MessageStatusTable messageStatusInfo;
+    private final PresenceTracker presence;
+    private final PresenceSubscriptions subscriptions = new PresenceSubscriptions();
+    private final EnvelopeCodec codec;
+    private final BinaryEnvelopeCodec binaryCodec = new BinaryEnvelopeCodec();
+    private final Process process;
+    private final HandshakeKeyGen handshakeKeyGen;
+    private final ExecutorService executor; // Потоки доставки повідомлень
+    private final ShardExecutor shards;     // Послідовна обробка повідомлень кожного користувача
+    private final Map<String, OutboundMailbox> mailboxes = new ConcurrentHashMap<>(); // sessionId -> черга відправки
+    private final OutboundMailbox.Limits mailboxLimits;
+    private final MailboxMetrics mailboxMetrics;
+    private final MessagingMetrics metrics;
+    private final StatusCoalescer<PendingStatus> statusCoalescer; // Об'єднання статусних повідомлень у пачки
+    private final BacklogReplayer replayer; // Відтворення збережених повідомлень після підключення
+    private final ClusterBus cluster;
+    private final UserDirectory directory = new UserDirectory(); // Користувачі, підключені до інших вузлів
+    private final Map<String, Map<String, Long>> forwarded = new ConcurrentHashMap<>(); // отримувач -> ключ -> час пересилання без підтвердження
+
+    public MessageWebSocketHandler(Map<String, WebSocketSession> clients, OfflineMessageStore offlineStore, MessageStatusTable messageStatusInfo, PresenceTracker presence, Map<String, String> clientStatus, HandshakeKeyStore handshakeKeys, ExecutorService executor, ShardExecutor shards, OutboundMailbox.Limits mailboxLimits, MailboxMetrics mailboxMetrics, MessagingMetrics metrics, StatusCoalescer<PendingStatus> statusCoalescer, BacklogReplayer replayer, EnvelopeCodec codec, ClusterBus cluster) {
+        this.sessions = new SessionRegistry(clients);
+        this.offlineStore = offlineStore;
+        this.messageStatusInfo = messageStatusInfo;
+        this.presence = presence;
         this.clientStatus = clientStatus;
-        this.clientsKey = clientsKey;
+        this.handshakeKeys = handshakeKeys;
+        this.executor = executor;
+        this.shards = shards;
+        this.mailboxLimits = mailboxLimits;
+        this.mailboxMetrics = mailboxMetrics;
+        this.metrics = metrics;
+        this.statusCoalescer = statusCoalescer;
+        this.replayer = replayer;
+        this.codec = codec;
+        this.process = new Process(this);
+        this.handshakeKeyGen = new HandshakeKeyGen(this);
+        this.cluster = cluster;
+        presence.start(this::onPresenceExpired);
+        statusCoalescer.start(this::flushStatuses);
+        replayer.start(this::sendSaved);
+        metrics.gauge("presence.subscriptions", subscriptions, PresenceSubscriptions::size);
+        metrics.gauge("cluster.remote.users", directory, UserDirectory::size);
+        cluster.start(this);
     }
 
     /**
      * Викликається після встановлення WebSocket-з'єднання з клієнтом.
-     * Логує нове підключення.
+     * Логує нове підключення і створює чергу відправки сесії.
      *
      * @param session WebSocket-сесія клієнта
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
+        mailboxes.put(session.getId(), new OutboundMailbox(session, executor, mailboxLimits, mailboxMetrics));
         logger.info(LogMessage.NEW_CONNECT.getMessage(), session.getId());
     }
 
@@ -60,43 +109,110 @@ public class MessageWebSocketHandler extends TextWebSocketHandler implements Pro
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, @NotNull TextMessage message) throws IOException {
-        String payload = message.getPayload();
+        handleFrame(session, message.getPayload());
+    }
+
+    /**
+     * Обробляє вхідні бінарні кадри від клієнтів {@code /ws-bin}.
+     * Конверти повідомлень передаються на обробку без проміжного JSON,
+     * службові кадри обробляються так само, як текстові.
+     *
+     * @param session WebSocket-сесія клієнта
+     * @param message Вхідний бінарний кадр
+     * @throws IOException Якщо виникає помилка при надсиланні відповіді
+     */
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, @NotNull BinaryMessage message) throws IOException {
+        ByteBuffer payload = message.getPayload();
+        if (!payload.hasRemaining()) {
+            return;
+        }
+        byte kind = payload.get();
+        switch (kind) {
+            case BinaryFrames.ENVELOPE -> dispatch(session, Packet.decode(payload, binaryCodec, codec));
+            case BinaryFrames.CONTROL -> handleFrame(session, BinaryFrames.readControl(payload));
+            default -> logger.warn("Unknown binary frame type {} from session {}", kind, session.getId());
+        }
+    }
 
+    /**
+     * Визначає тип повідомлення (реєстрація, перевірка статусу чи інше) і відповідним чином реагує.
+     *
+     * @param session WebSocket-сесія клієнта
+     * @param payload Текст повідомлення
+     */
+    private void handleFrame(WebSocketSession session, String payload) {
         if (payload.startsWith(REGISTER)) {
+            metrics.received(MessagingMetrics.REGISTER);
             JSONObject json = new JSONObject(payload.substring(REGISTER.length()));
             String userId = json.optString("userId", null);
             String life = json.optString("life", "unknown");
             String contacts = json.optString("contacts", "[]");
 
-            // Перевіряємо, чи користувач вже зареєстрований
-            if (userId == null || clients.containsKey(userId)) {
-                session.sendMessage(new TextMessage(REGISTER_FAILED));
+            // Додаємо користувача до списку підключених клієнтів, якщо він ще не зареєстрований
+            if (userId == null || sessions.putIfAbsent(userId, session) != null) {
+                sendControl(session, REGISTER_FAILED);
                 return;
             }
 
-            // Додаємо користувача до списку підключених клієнтів
-            clients.put(userId, session);
             clientStatus.put(userId, life);
-            session.sendMessage(new TextMessage(REGISTER_OK + ":" + getContactStatus(contacts)));
+            presence.touch(userId);
+            subscriptions.subscribe(userId, contactIds(contacts));
+            sendControl(session, REGISTER_OK + ":" + getContactStatus(subscriptions.contactsOf(userId)));
+            publishPresence(userId);
         } else if (payload.startsWith(CHECK_STATUS)) {
+            metrics.received(MessagingMetrics.CHECK_STATUS);
             JSONObject json = new JSONObject(payload.substring(CHECK_STATUS.length()));
             String userId = json.optString("userId", null);
             String life = json.optString("life", "unknown");
-            String contacts = json.optString("contacts", "[]");
+            String contacts = json.optString("contacts", null);
+            long since = json.optLong("version", -1);
 
             if (userId != null) {
-                clients.putIfAbsent(userId, session);
+                sessions.putIfAbsent(userId, session);
                 clientStatus.put(userId, life);
-                lastPingTime.put(userId, System.currentTimeMillis());
-                session.sendMessage(new TextMessage(REGISTER_OK + ":" + getContactStatus(contacts)));
-                logger.info(LogMessage.CHECK_CONTACTS.getMessage(), getContactStatus(contacts));
+                presence.touch(userId);
+                publishPresence(userId);
+
+                // Старі клієнти надсилають контакти з кожним CHECK_STATUS — оновлюємо підписку і відповідаємо повним списком.
+                // Клієнти, що отримують PRESENCE, можуть не надсилати контакти: тоді відповідь порожня, а зміни приходять окремо.
+                // Клієнт, що передав "version", отримує лише контакти, статус яких змінився після цієї версії, і нову версію;
+                // щойно додані контакти клієнт ще не бачив, тож вони повертаються завжди.
+                Set<String> added = contacts != null ? subscriptions.subscribe(userId, contactIds(contacts)) : Set.of();
+                String contactStatus;
+                if (since >= 0) {
+                    contactStatus = getContactChanges(subscriptions.contactsOf(userId), added, since);
+                } else if (contacts != null) {
+                    contactStatus = getContactStatus(subscriptions.contactsOf(userId));
+                } else {
+                    contactStatus = "[]";
+                }
+                sendControl(session, REGISTER_OK + ":" + contactStatus);
+                if (LogMessage.CHECK_CONTACTS.sampled()) {
+                    logger.info(LogMessage.CHECK_CONTACTS.getMessage(), LogMessage.payload(contactStatus));
+                }
 
                 // Відправляємо клієнту збережені повідомлення
-                sendSavedMessages(userId);
+                replayer.replay(userId, session);
             }
         } else {
             // Обробка інших типів повідомлень
-            new Process(this).processMessage(session, payload);
+            dispatch(session, Packet.parse(payload, codec));
+        }
+    }
+
+    /**
+     * Передає повідомлення на обробку в шард користувача, якому воно належить.
+     * Якщо черга шарду заповнена, повідомлення відхиляється, і відправник не отримує для нього статус "server".
+     *
+     * @param session WebSocket-сесія відправника
+     * @param packet  Розібране повідомлення.
+     */
+    private void dispatch(WebSocketSession session, Packet packet) {
+        metrics.received(packet.getOperation());
+        if (!shards.tryExecute(Process.ownerOf(packet), () -> process.processMessage(session, packet))
+                && LogMessage.SHARD_FULL.sampled()) {
+            logger.warn(LogMessage.SHARD_FULL.getMessage(), packet.getSenderId());
         }
     }
 
@@ -110,11 +226,21 @@ public class MessageWebSocketHandler extends TextWebSocketHandler implements Pro
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        String clientId = getClientId(session);
+        OutboundMailbox mailbox = mailboxes.remove(session.getId());
+        if (mailbox != null) {
+            mailbox.close(); // Невідправлені повідомлення зберігаються як офлайн
+        }
+
+        String clientId = sessions.remove(session); // Видаляємо клієнта зі списку активних сесій
 
         if (clientId != null) {
-            lastPingTime.remove(clientId); // Видаляємо інформацію про останній пінг клієнта
-            clients.remove(clientId); // Видаляємо клієнта зі списку активних сесій
+            replayer.stop(clientId, session);
+            // Після закінчення присутності користувач міг уже підключитися новою сесією — її дані не чіпаємо
+            if (!sessions.contains(clientId)) {
+                presence.remove(clientId); // Видаляємо інформацію про останній пінг клієнта
+                subscriptions.unsubscribe(clientId);
+                publishPresence(clientId);
+            }
             logger.info(LogMessage.CONNECT_CLOSED.getMessage(), clientId);
         } else {
             logger.warn("Unknown session {} disconnected", session.getId());
@@ -122,109 +248,349 @@ public class MessageWebSocketHandler extends TextWebSocketHandler implements Pro
     }
 
     /**
-     * Отримує унікальний ідентифікатор клієнта за його WebSocket-сесією.
+     * Перевіряє статус підключення контактів у WebSocket-сесії.
      *
-     * @param session WebSocket-сесія клієнта.
-     * @return Ідентифікатор клієнта або null, якщо клієнт не знайдений.
+     * @param contacts ідентифікатори клієнтів
+     * @return JSON-рядок, що містить список контактів і їхній статус ("online" або "disconnect").
      */
-    private String getClientId(WebSocketSession session) {
-        return clients.entrySet()
-                .stream()
-                .filter(entry -> entry.getValue().equals(session))
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(null);
+    private String getContactStatus(Collection<String> contacts) {
+        JSONArray result = new JSONArray();
+        for (String id : contacts) {
+            result.put(id + "=" + currentStatus(id));
+        }
+        return result.toString();
     }
 
-
     /**
-     * Перевіряє статус підключення контактів у WebSocket-сесії.
-     * <p>
-     * Метод отримує JSON-масив із списком ідентифікаторів клієнтів,
-     * перевіряє їхню активність у WebSocket-з'єднанні та визначає їхній статус.
+     * Повертає лише ті контакти, статус яких змінився після версії, яку клієнт отримав востаннє.
+     * Контакти, яких немає у відповіді, зберігають попередній статус; до першої зміни статус — "disconnect".
+     * Нові контакти повертаються незалежно від версії: клієнт ще не отримував їхнього статусу.
      *
-     * @param contacts JSON-рядок, що містить масив ідентифікаторів клієнтів.
-     * @return JSON-рядок, що містить список контактів і їхній статус ("online" або "disconnect").
+     * @param contacts ідентифікатори клієнтів
+     * @param added    контакти, щойно додані до підписки
+     * @param since    версія з попередньої відповіді (0 — для першого запиту)
+     * @return JSON-об'єкт {@code {"version":N,"contacts":["id=status",...]}}
      */
-    private String getContactStatus(String contacts) {
-        JSONArray jsonArray = new JSONArray(contacts);
-        List<String> resultList = new ArrayList<>();
-        long currentTime = System.currentTimeMillis();
+    private String getContactChanges(Collection<String> contacts, Set<String> added, long since) {
+        // Версія читається до обходу: зміни, що відбудуться під час обходу, прийдуть ще раз у наступній відповіді
+        long version = subscriptions.version();
+        JSONArray changed = new JSONArray();
+        for (String id : contacts) {
+            if (added.contains(id) || subscriptions.versionOf(id) > since) {
+                changed.put(id + "=" + subscriptions.statusOf(id));
+            }
+        }
+        return new JSONObject().put("version", version).put("contacts", changed).toString();
+    }
 
-        for (int i = 0; i < jsonArray.length(); i++) {
-            String id = jsonArray.getString(i);
-            WebSocketSession recipient = clients.get(id);
+    /**
+     * @param userId ідентифікатор користувача
+     * @return статус користувача або "disconnect", якщо він не підключений чи не надсилає пінги
+     */
+    private String currentStatus(String userId) {
+        WebSocketSession session = sessions.getSession(userId);
+        if (session != null && session.isOpen() && presence.isAlive(userId)) {
+            return clientStatus.getOrDefault(userId, PresenceSubscriptions.DISCONNECT);
+        }
+        String remote = directory.statusOf(userId);
+        return remote != null ? remote : PresenceSubscriptions.DISCONNECT;
+    }
 
-            if (recipient != null && recipient.isOpen()) {
-                long lastSeen = lastPingTime.getOrDefault(id, 0L);
+    /**
+     * Розсилає зміну статусу користувача тим, хто підписаний на його присутність.
+     * Якщо статус не змінився з останньої розсилки, нічого не надсилається.
+     * Кадр має вигляд {@code PRESENCE:["userId=status"]}, як елементи відповіді {@code REGISTER_OK}.
+     *
+     * @param userId ідентифікатор користувача, статус якого міг змінитися
+     */
+    private void publishPresence(String userId) {
+        String status = currentStatus(userId);
+        if (!subscriptions.publish(userId, status)) {
+            return;
+        }
+        cluster.publishPresence(userId, status);
+        notifyWatchers(userId, status);
+    }
 
-                if ((currentTime - lastSeen) > 6000) {
-                    logger.warn(LogMessage.CONNECT_CLOSED.getMessage(), id);
-                    lastPingTime.remove(id);
-                    clients.remove(id);
-                    resultList.add(id + "=disconnect");
-                } else {
-                    String status = clientStatus.getOrDefault(id, "disconnect");
-                    resultList.add(id + "=" + status);
-                }
-            } else {
-                resultList.add(id + "=disconnect");
+    /**
+     * Надсилає зміну статусу локальним клієнтам, підписаним на користувача.
+     */
+    private void notifyWatchers(String userId, String status) {
+        String frame = PRESENCE + new JSONArray().put(userId + "=" + status);
+        for (String watcherId : subscriptions.watchersOf(userId)) {
+            WebSocketSession watcher = sessions.getSession(watcherId);
+            if (watcher != null && watcher.isOpen()) {
+                sendControl(watcher, frame);
             }
         }
+    }
 
-        return new JSONArray(resultList).toString();
+    private static List<String> contactIds(String contacts) {
+        JSONArray jsonArray = new JSONArray(contacts);
+        List<String> ids = new ArrayList<>(jsonArray.length());
+        for (int i = 0; i < jsonArray.length(); i++) {
+            ids.add(jsonArray.getString(i));
+        }
+        return ids;
     }
 
+    /**
+     * Викликається фоновим потоком присутності, коли клієнт довго не надсилав пінгів.
+     * Клієнт видаляється зі списку активних сесій, доки знову не надішле CHECK_STATUS, і відтворення
+     * збережених повідомлень у його сесію зупиняється (CHECK_STATUS запустить його знову).
+     * Підписка на контакти лишається для повторної реєстрації і прибирається при закритті сесії.
+     *
+     * @param userId ідентифікатор користувача
+     */
+    private void onPresenceExpired(String userId) {
+        WebSocketSession session = sessions.detach(userId);
+        if (session != null) {
+            replayer.stop(userId, session);
+            logger.warn(LogMessage.CONNECT_CLOSED.getMessage(), userId);
+        }
+        publishPresence(userId);
+    }
 
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(10); // Потоки для швидкої обробки
 
     /**
      * Надсилає повідомлення користувачу.
-     * Використати ExecutorService для асинхронної відправки повідомлень – щоб не блокувати потік.
+     * Повідомлення ставиться в чергу сесії отримувача, тож запис до одного користувача
+     * не блокує запис до інших, а повідомлення одному користувачу зберігають порядок.
      *
-     * @param receiverId  Ідентифікатор отримувача.
-     * @param jsonMessage Повідомлення у форматі JSON.
+     * @param receiverId Ідентифікатор отримувача.
+     * @param packet     Розібране повідомлення.
      */
     @Override
-    public void sendMessage(String receiverId, String jsonMessage) {
-        executor.execute(() -> {
-            try {
-                WebSocketSession recipient = clients.get(receiverId);
-                JSONObject jsonObject = new JSONObject(jsonMessage);
-                String messageId = jsonObject.optString("messageId");
-
-                if (recipient != null && recipient.isOpen()) {
-                    //Якщо кілька потоків надсилають повідомлення через один і той самий WebSocket, потрібно синхронізувати доступ:
-                    synchronized (recipient) {
-                        recipient.sendMessage(new TextMessage(jsonMessage));
-                    }
-
-                    if ("delivered".equals(getMessageStatus(receiverId + ":" + messageId))) {
-                        deleteSaveMessages(receiverId, messageId);
-                    } else {
-                        saveMessage(receiverId, jsonMessage);  // Якщо не підтверджене, зберігаємо
-                    }
-                } else {
-                    saveMessage(receiverId, jsonMessage);
-                    logger.warn(LogMessage.STATUS_CONNECT.getMessage(), receiverId);
+    public void sendMessage(String receiverId, Packet packet) {
+        WebSocketSession recipient = sessions.getSession(receiverId);
 
-                }
-            } catch (IOException e) {
-                saveMessage(receiverId, jsonMessage);
-                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), e.getMessage());
+        // Отримувач підключений до іншого вузла — пересилаємо повідомлення туди
+        if ((recipient == null || !recipient.isOpen()) && forward(receiverId, packet)) {
+            return;
+        }
+        deliver(recipient, receiverId, packet);
+    }
+
+    /**
+     * Доставляє повідомлення локальному клієнту або зберігає його, якщо клієнт не підключений.
+     *
+     * @param recipient  сесія отримувача (може бути null)
+     * @param receiverId Ідентифікатор отримувача.
+     * @param packet     Розібране повідомлення.
+     */
+    private void deliver(WebSocketSession recipient, String receiverId, Packet packet) {
+        if (recipient == null || !recipient.isOpen()) {
+            saveMessage(receiverId, packet);
+            logger.warn(LogMessage.STATUS_CONNECT.getMessage(), receiverId);
+            return;
+        }
+        if (coalesces(recipient, packet)) {
+            statusCoalescer.add(recipient, new PendingStatus(receiverId, packet));
+            return;
+        }
+        if (Process.expectsAck(packet) && replayer.isActive(receiverId)) {
+            // Отримувач ще отримує збережені повідомлення — нове йде в кінець черги, щоб зберегти порядок
+            saveMessage(receiverId, packet);
+            replayer.replay(receiverId, recipient);
+            return;
+        }
+
+        // Результат запису обробляється в шарді отримувача, як і його підтвердження "delivered",
+        // інакше підтвердження, що прийшло під час обробки запису, не знайшло б статусу і повідомлення зберіглося б знову
+        boolean queued = offer(recipient, toMessage(recipient, packet), isStatus(packet), error -> shards.execute(receiverId, () -> {
+            if (error == null) {
+                metrics.delivered(packet);
+                afterDelivery(recipient, receiverId, packet);
+            } else {
+                saveMessage(receiverId, packet);
+                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), error.getMessage());
+            }
+        }));
+        if (!queued) {
+            // Черга отримувача переповнена — зберігаємо як офлайн-повідомлення
+            saveMessage(receiverId, packet);
+            logger.warn(LogMessage.MAILBOX_FULL.getMessage(), receiverId);
+        }
+    }
+
+    /**
+     * Відправляє підтвердження у конкретну сесію через її чергу,
+     * щоб не змагатися за сесію з доставкою звичайних повідомлень.
+     *
+     * @param session WebSocket-сесія клієнта
+     * @param packet  повідомлення
+     */
+    @Override
+    public void sendToSession(WebSocketSession session, Packet packet) {
+        if (coalesces(session, packet)) {
+            statusCoalescer.add(session, new PendingStatus(null, packet));
+            return;
+        }
+        boolean queued = offer(session, toMessage(session, packet), isStatus(packet), error -> {
+            if (error == null) {
+                metrics.sent(packet);
+            } else {
+                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), error.getMessage());
             }
         });
+        if (!queued) {
+            logger.warn(LogMessage.MAILBOX_FULL.getMessage(), session.getId());
+        }
+    }
+
+    /**
+     * Відправляє службовий кадр ({@code REGISTER_OK}, {@code REGISTER_FAILED}, {@code PRESENCE}) у сесію.
+     *
+     * @param session WebSocket-сесія клієнта
+     * @param text    текст відповіді
+     */
+    private void sendControl(WebSocketSession session, String text) {
+        WebSocketMessage<?> message = BinaryFrames.isBinary(session) ? BinaryFrames.control(text) : new TextMessage(text);
+        if (!offer(session, message, false, null)) {
+            logger.warn(LogMessage.MAILBOX_FULL.getMessage(), session.getId());
+        }
+    }
+
+    /**
+     * Створює кадр у форматі, який обрав клієнт при підключенні.
+     */
+    private WebSocketMessage<?> toMessage(WebSocketSession session, Packet packet) {
+        return BinaryFrames.isBinary(session)
+                ? BinaryFrames.envelope(packet.getBinary(binaryCodec))
+                : new TextMessage(packet.getPayload());
+    }
+
+    /**
+     * Статусні повідомлення лише оновлюють стан вже доставлених повідомлень, тож при переповненні черги їх можна відкинути.
+     */
+    private static boolean isStatus(Packet packet) {
+        return OperationType.MESSAGE_STATUS.equals(packet.getOperation());
+    }
+
+    /**
+     * Статусні повідомлення для текстових клієнтів об'єднуються, якщо це ввімкнено.
+     */
+    private boolean coalesces(WebSocketSession session, Packet packet) {
+        return statusCoalescer.isEnabled() && isStatus(packet) && !BinaryFrames.isBinary(session);
+    }
+
+    /**
+     * Відправляє зібрані за вікно статусні повідомлення одним кадром — JSON-масивом конвертів.
+     * Одне повідомлення відправляється як є.
+     *
+     * @param session  WebSocket-сесія отримувача
+     * @param statuses статусні повідомлення у порядку надходження
+     */
+    private void flushStatuses(WebSocketSession session, List<PendingStatus> statuses) {
+        StringBuilder frame = new StringBuilder();
+        if (statuses.size() == 1) {
+            frame.append(statuses.get(0).packet().getPayload());
+        } else {
+            frame.append('[');
+            for (int i = 0; i < statuses.size(); i++) {
+                if (i > 0) {
+                    frame.append(',');
+                }
+                frame.append(statuses.get(i).packet().getPayload());
+            }
+            frame.append(']');
+        }
+
+        boolean queued = session.isOpen() && offer(session, new TextMessage(frame), true,
+                error -> statuses.forEach(status -> completeStatus(status, error)));
+        if (!queued) {
+            logger.warn(LogMessage.MAILBOX_FULL.getMessage(), session.getId());
+            IOException error = new IOException("Status batch not queued for session " + session.getId());
+            statuses.forEach(status -> completeStatus(status, error));
+        }
+    }
+
+    /**
+     * Завершує статусне повідомлення з пачки так само, як окреме: адресоване користувачу
+     * при помилці зберігається; підтвердження для сесії лише логуються.
+     */
+    private void completeStatus(PendingStatus status, Exception error) {
+        if (error == null) {
+            metrics.delivered(status.packet());
+        }
+        if (status.receiverId() == null) {
+            if (error != null) {
+                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), error.getMessage());
+            }
+        } else if (error != null) {
+            saveMessage(status.receiverId(), status.packet());
+        }
+    }
+
+    /**
+     * Ставить кадр у чергу сесії. Черга створюється при підключенні і прибирається при закритті,
+     * тож сесія без черги вже закрита: кадр не приймається, і викликач зберігає його як для переповненої черги.
+     *
+     * @return false, якщо кадр не прийнятий
+     */
+    private boolean offer(WebSocketSession session, WebSocketMessage<?> message, boolean droppable, OutboundMailbox.Callback callback) {
+        OutboundMailbox mailbox = mailboxes.get(session.getId());
+        return mailbox != null && mailbox.offer(message, droppable, callback);
+    }
+
+    /**
+     * Після запису повідомлення перевіряє, чи клієнт вже підтвердив доставку.
+     * Непідтверджене повідомлення зберігається до підтвердження і позначається як уже відправлене в цю сесію,
+     * щоб відтворення збережених повідомлень не відправило його вдруге. Повідомлення, які не підтверджуються
+     * ({@link Process#expectsAck}), після запису вважаються доставленими і не зберігаються.
+     * Виконується в шарді отримувача.
+     *
+     * @param recipient  сесія, в яку записане повідомлення
+     * @param receiverId Ідентифікатор отримувача.
+     * @param packet     Розібране повідомлення.
+     */
+    private void afterDelivery(WebSocketSession recipient, String receiverId, Packet packet) {
+        if (!Process.expectsAck(packet)) {
+            return;
+        }
+        String messageId = packet.getMessageId();
+
+        if ("delivered".equals(getMessageStatus(receiverId, messageId))) {
+            deleteSaveMessages(receiverId, messageId);
+        } else {
+            saveMessage(receiverId, packet);  // Якщо не підтверджене, зберігаємо
+            replayer.onDelivered(receiverId, recipient, OfflineMessageStore.keyOf(packet));
+        }
+    }
+
+    /**
+     * Пересилає повідомлення на вузол кластера, до якого підключений отримувач. Як і при пересиланні
+     * збережених повідомлень ({@link #forwardSavedMessages}), повідомлення спершу зберігається тут
+     * і видаляється лише після підтвердження від вузла отримувача ({@link #onDeliveryAck}): черга до вузла
+     * втрачається при розриві з'єднання, а відправник уже отримав статус "server".
+     *
+     * @return false, якщо отримувач не підключений до інших вузлів
+     */
+    private boolean forward(String receiverId, Packet packet) {
+        String nodeId = directory.nodeOf(receiverId);
+        if (nodeId == null) {
+            return false;
+        }
+        saveMessage(receiverId, packet);
+        String key = OfflineMessageStore.keyOf(packet);
+        Map<String, Long> pending = forwarded.computeIfAbsent(receiverId, k -> new ConcurrentHashMap<>());
+        pending.put(key, System.currentTimeMillis());
+        if (!cluster.deliver(nodeId, receiverId, packet.getPayload(), key)) {
+            // Вузол недоступний: повідомлення лишається збереженим до наступного підключення отримувача
+            pending.remove(key);
+        }
+        return true;
     }
 
     @Override
-    public Map<String, WebSocketSession> getOnlineUsers() {
-        return clients;
+    public boolean isOnline(String userId) {
+        return sessions.contains(userId) || directory.nodeOf(userId) != null;
     }
 
     @Override
-    public Map<String, String> getClientsKey() {
-        return clientsKey;
+    public HandshakeKeyStore getHandshakeKeys() {
+        return handshakeKeys;
     }
 
 
@@ -232,60 +598,60 @@ public class MessageWebSocketHandler extends TextWebSocketHandler implements Pro
      * Метод для збереження офлайн-повідомлень.
      *
      * @param receiverId Ідентифікатор отримувача.
-     * @param message    Повідомлення для збереження.
+     * @param packet     Повідомлення для збереження.
      */
-    public void saveMessage(String receiverId, String message) {
-        logger.info(LogMessage.SAVE_MESSAGE.getMessage(), receiverId, LogMessage.colorizeJson(message));
-        saveMessages.computeIfAbsent(receiverId, k -> new ArrayList<>()).add(message);
+    @Override
+    public void saveMessage(String receiverId, Packet packet) {
+        if (offlineStore.append(receiverId, packet) && LogMessage.SAVE_MESSAGE.sampled()) {
+            logger.info(LogMessage.SAVE_MESSAGE.getMessage(), receiverId, LogMessage.payload(packet.getPayload()));
+        }
     }
 
 
     /**
-     * @param umId обєдання userID messageID для унеможливлення співпадіння ID повідомлень
+     * Статус зберігається за парою userID/messageID, щоб унеможливити співпадіння ID повідомлень різних користувачів.
+     *
+     * @param userId        ідентифікатор користувача
+     * @param messageId     ідентифікатор повідомлення
+     * @param messageStatus статус повідомлення
      */
     @Override
-    public void setMessageStatus(String umId, String messageStatus) {
-        messageStatusInfo.computeIfAbsent(umId, k -> messageStatus);
+    public void setMessageStatus(String userId, String messageId, String messageStatus) {
+        messageStatusInfo.put(userId, messageId, messageStatus);
     }
 
     /**
-     * Отримує статус повідомлення за унікальним ідентифікатором (userID + messageID).
+     * Отримує статус повідомлення за парою userID/messageID.
      *
-     * @param umId об'єднання userID і messageID для уникнення збігів ID повідомлень.
-     * @return статус повідомлення або null, якщо такого повідомлення немає.
+     * @param userId    ідентифікатор користувача
+     * @param messageId ідентифікатор повідомлення
+     * @return статус повідомлення або null, якщо такого повідомлення немає або статус застарів.
      */
-    public String getMessageStatus(String umId) {
-        return messageStatusInfo.get(umId);
+    public String getMessageStatus(String userId, String messageId) {
+        return messageStatusInfo.get(userId, messageId);
     }
 
     /**
-     * відправка повідомлення
+     * Відправляє збережене повідомлення під час відтворення. Повідомлення вже є в сховищі,
+     * тож після запису воно не зберігається повторно, а видаляється лише після підтвердження.
      *
-     * @param userId його ідентіфікаційний номер
-     */
-    private void sendSavedMessages(String userId) {
-        try {
-            if (saveMessages.containsKey(userId)) {
-                List<String> messages = new ArrayList<>(saveMessages.get(userId)); // Уникаємо ConcurrentModificationException
-                for (String message : messages) {
-                    JSONObject jsonObject = new JSONObject(message);
-                    String messageId = jsonObject.optString("messageId");
-
-                    if (!"delivered".equals(getMessageStatus(userId + ":" + messageId))) {
-                        sendMessage(userId, message);
-                        logger.info(LogMessage.SEND_MESSAGE.getMessage(), userId, LogMessage.colorizeJson(message));
-                    } else {
-                        deleteSaveMessages(userId, messageId);
-                        logger.info(LogMessage.MESSAGE_DELIVERED.getMessage(), messageId);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), e.getMessage());
+     * @param session  WebSocket-сесія отримувача
+     * @param message  збережене повідомлення
+     * @param callback результат запису
+     * @return false, якщо черга сесії не прийняла повідомлення
+     */
+    private boolean sendSaved(WebSocketSession session, Packet message, OutboundMailbox.Callback callback) {
+        if (LogMessage.SEND_SAVE_MESSAGE.sampled()) {
+            logger.info(LogMessage.SEND_SAVE_MESSAGE.getMessage(), message.getReceiverId(), LogMessage.payload(message.getPayload()));
         }
+        return offer(session, toMessage(session, message), false, error -> {
+            if (error == null) {
+                metrics.sent(message);
+            }
+            callback.onComplete(error);
+        });
     }
 
-
     /**
      * Видаляємо збережені офлайн-повідомлення, коли користувач підтвердив отримання.
      *
@@ -294,18 +660,133 @@ public class MessageWebSocketHandler extends TextWebSocketHandler implements Pro
      */
     @Override
     public void deleteSaveMessages(String userId, String messageId) {
-        if (saveMessages.containsKey(userId)) {
-            saveMessages.computeIfPresent(userId, (key, messages) -> {
-                messages.removeIf(msg -> new JSONObject(msg).optString("messageId").equals(messageId));
-                return messages.isEmpty() ? null : messages;
-            });
+        if (offlineStore.remove(userId, messageId) && LogMessage.DELETE_MESSAGE.sampled()) {
             logger.info(LogMessage.DELETE_MESSAGE.getMessage(), userId, messageId);
         }
+        replayer.onAck(userId, messageId);
+    }
+
+
+    /**
+     * Викликається в шарді пари ({@link Process#ownerOf}), тож ключі однієї пари передаються в порядку надходження.
+     * Сховище ключів саме гарантує, що одночасні рукостискання двох сторін завершаться рівно одним обміном.
+     */
+    @Override
+    public void onHandshake(String pairKey, String senderId, String receiverId, String publicKey) {
+        // Ключі пари мають зустрітися на одному вузлі, тому рукостискання обробляє вузол, відповідальний за пару
+        String owner = cluster.ownerOf(pairKey);
+        if (!owner.equals(cluster.nodeId()) && cluster.handshake(owner, senderId, receiverId, publicKey)) {
+            metrics.handshake(true);
+            return;
+        }
+        metrics.handshake(false);
+        handshakeKeyGen.handleHandshake(pairKey, senderId, receiverId, publicKey);
+    }
+
+    @Override
+    public Map<String, String> localPresence() {
+        Map<String, String> result = new HashMap<>();
+        for (String userId : sessions.getClients().keySet()) {
+            String status = currentStatus(userId);
+            if (!PresenceSubscriptions.DISCONNECT.equals(status)) {
+                result.put(userId, status);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Інший вузол повідомив про зміну статусу свого користувача.
+     * Якщо користувач підключився, збережені тут повідомлення для нього пересилаються на його вузол.
+     */
+    @Override
+    public void onRemotePresence(String nodeId, String userId, String status) {
+        if (sessions.contains(userId)) {
+            return; // Локальне підключення важливіше за відомості від інших вузлів
+        }
+        if (PresenceSubscriptions.DISCONNECT.equals(status)) {
+            if (!directory.remove(userId, nodeId)) {
+                return;
+            }
+        } else {
+            directory.put(userId, nodeId, status);
+            executor.execute(() -> forwardSavedMessages(userId));
+        }
+        if (subscriptions.publish(userId, status)) {
+            notifyWatchers(userId, status);
+        }
+    }
+
+    @Override
+    public void onNodeDown(String nodeId) {
+        for (String userId : directory.removeNode(nodeId)) {
+            forwarded.remove(userId); // Непідтверджені пересилання повторяться, коли користувач з'явиться знову
+            if (!sessions.contains(userId) && subscriptions.publish(userId, PresenceSubscriptions.DISCONNECT)) {
+                notifyWatchers(userId, PresenceSubscriptions.DISCONNECT);
+            }
+        }
     }
 
+    /**
+     * Повідомлення, переслане іншим вузлом, доставляється лише локально (або зберігається),
+     * щоб розбіжність довідників не призвела до пересилання по колу.
+     */
+    @Override
+    public void onRemoteDelivery(String receiverId, String payload) {
+        deliver(sessions.getSession(receiverId), receiverId, Packet.parse(payload, codec));
+    }
 
     @Override
-    public void onHandshake(String senderId, String receiverId, String publicKey) {
-         new HandshakeKeyGen(this).handleHandshake(senderId, receiverId, publicKey);
+    public void onRemoteHandshake(String senderId, String receiverId, String publicKey) {
+        // Як і локальні, рукостискання від інших вузлів обробляються в шарді пари
+        String pairKey = Process.pairKey(senderId, receiverId);
+        shards.execute(pairKey, () -> handshakeKeyGen.handleHandshake(pairKey, senderId, receiverId, publicKey));
+    }
+
+    @Override
+    public void onDeliveryAck(String receiverId, String ackKey) {
+        forwarded.computeIfPresent(receiverId, (userId, pending) -> {
+            pending.remove(ackKey);
+            return pending.isEmpty() ? null : pending;
+        });
+        offlineStore.remove(receiverId, ackKey);
+    }
+
+    /**
+     * Пересилає збережені на цьому вузлі повідомлення на вузол, до якого підключився отримувач.
+     * Повідомлення видаляється звідси лише після підтвердження від вузла отримувача ({@link #onDeliveryAck}),
+     * тож розрив з'єднання після відправки його не втрачає. Поки підтвердження не минув час очікування,
+     * повідомлення не пересилається вдруге.
+     *
+     * @param userId ідентифікатор отримувача
+     */
+    private void forwardSavedMessages(String userId) {
+        String nodeId = directory.nodeOf(userId);
+        if (nodeId == null) {
+            return;
+        }
+        Map<String, Long> pending = forwarded.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
+        long now = System.currentTimeMillis();
+        for (Packet message : offlineStore.messages(userId)) {
+            String key = OfflineMessageStore.keyOf(message);
+            Long sentAt = pending.get(key);
+            if (sentAt != null && now - sentAt < FORWARD_ACK_TIMEOUT_MILLIS) {
+                continue;
+            }
+            pending.put(key, now);
+            if (!cluster.deliver(nodeId, userId, message.getPayload(), key)) {
+                pending.remove(key);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Статусне повідомлення, що чекає на відправку в пачці.
+     *
+     * @param receiverId отримувач (null для підтверджень, адресованих безпосередньо сесії)
+     * @param packet     повідомлення
+     */
+    record PendingStatus(String receiverId, Packet packet) {
     }
 }
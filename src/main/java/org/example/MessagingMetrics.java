@@ -0,0 +1,191 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.example.process.OperationType;
+import org.example.process.Packet;
+import org.example.store.OfflineMessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Метрики конвеєра повідомлень (Micrometer): вхідні та вихідні конверти за типом операції,
+ * затримка доставки, рукостискання, розміри черг і таблиць, офлайн-черги найбільших отримувачів.
+ * <p>
+ * Лічильники за операцією кешуються, тож облік одного повідомлення — це пошук у мапі та інкремент.
+ * Невідомі операції рахуються як {@code other}, щоб клієнт не міг роздути кількість часових рядів.
+ */
+public class MessagingMetrics implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MessagingMetrics.class);
+
+    // Службові кадри, що рахуються разом з конвертами
+    static final String REGISTER = "REGISTER";
+    static final String CHECK_STATUS = "CHECK_STATUS";
+
+    private static final String PREFIX = "servercube.";
+    private static final String OTHER = "other";
+    private static final Set<String> OPERATIONS = Set.of(
+            OperationType.MESSAGE, OperationType.MESSAGE_STATUS, OperationType.HANDSHAKE, OperationType.KEY_EXCHANGE,
+            OperationType.GET_AVATAR, OperationType.AVATAR, OperationType.AVATAR_ORG, OperationType.IMAGE, OperationType.FILE,
+            REGISTER, CHECK_STATUS);
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> framesIn = new ConcurrentHashMap<>();
+    private final Map<String, Counter> framesOut = new ConcurrentHashMap<>();
+    private final Timer deliveryLatency;
+    private final Counter localHandshakes;
+    private final Counter forwardedHandshakes;
+    private final AtomicLong backlogTotal = new AtomicLong();
+    private ScheduledExecutorService timer;
+
+    public MessagingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.deliveryLatency = Timer.builder(PREFIX + "delivery.latency")
+                .description("Час від розбору вхідного кадру до запису повідомлення в сесію отримувача")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.localHandshakes = handshakes("local");
+        this.forwardedHandshakes = handshakes("forwarded");
+    }
+
+    /**
+     * Вхідний кадр: конверт або службовий кадр ({@code REGISTER}, {@code CHECK_STATUS}).
+     *
+     * @param operation тип операції
+     */
+    public void received(String operation) {
+        counter(framesIn, "frames.in", operation).increment();
+    }
+
+    /**
+     * Конверт записаний у сесію.
+     *
+     * @param packet повідомлення
+     */
+    public void sent(Packet packet) {
+        counter(framesOut, "frames.out", packet.getOperation()).increment();
+    }
+
+    /**
+     * Повідомлення, отримане від клієнта, записане в сесію отримувача: рахується як вихідне
+     * і додається до затримки доставки.
+     *
+     * @param packet повідомлення
+     */
+    public void delivered(Packet packet) {
+        sent(packet);
+        deliveryLatency.record(System.nanoTime() - packet.getCreatedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param forwarded true, якщо рукостискання передане вузлу, відповідальному за пару
+     */
+    public void handshake(boolean forwarded) {
+        (forwarded ? forwardedHandshakes : localHandshakes).increment();
+    }
+
+    /**
+     * Реєструє показник поточного значення.
+     *
+     * @param name   назва без префікса, наприклад {@code sessions.online}
+     * @param target об'єкт, з якого читається значення
+     * @param value  функція, що повертає значення
+     */
+    public <T> void gauge(String name, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(PREFIX + name, target, value).register(registry);
+    }
+
+    /**
+     * Реєструє показник поточного значення з мітками, наприклад окремо для кожного шарду.
+     *
+     * @param name   назва без префікса
+     * @param tags   мітки показника
+     * @param target об'єкт, з якого читається значення
+     * @param value  функція, що повертає значення
+     */
+    public <T> void gauge(String name, Tags tags, T target, ToDoubleFunction<T> value) {
+        Gauge.builder(PREFIX + name, target, value).tags(tags).register(registry);
+    }
+
+    /**
+     * Реєструє лічильник, що зростає, значення якого читається з об'єкта.
+     *
+     * @param name   назва без префікса
+     * @param target об'єкт, з якого читається значення
+     * @param value  функція, що повертає значення
+     */
+    public <T> void counter(String name, T target, ToDoubleFunction<T> value) {
+        FunctionCounter.builder(PREFIX + name, target, value).register(registry);
+    }
+
+    /**
+     * Періодично оновлює розмір офлайн-черг: загальний і для {@code top} отримувачів з найбільшими чергами.
+     * Підрахунок обходить індекс сховища, тому виконується за таймером, а не при кожному зчитуванні метрик.
+     *
+     * @param store         офлайн-сховище
+     * @param top           скільки найбільших черг показувати (0 — лише загальний розмір)
+     * @param refreshMillis інтервал оновлення
+     */
+    public synchronized void trackBacklog(OfflineMessageStore store, int top, long refreshMillis) {
+        if (timer != null) {
+            throw new IllegalStateException("Backlog is already tracked");
+        }
+        gauge("offline.backlog.total", backlogTotal, AtomicLong::get);
+        MultiGauge largest = MultiGauge.builder(PREFIX + "offline.backlog")
+                .description("Офлайн-черги отримувачів з найбільшою кількістю повідомлень")
+                .register(registry);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backlog-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                Map<String, Integer> sizes = store.backlogSizes();
+                backlogTotal.set(sizes.values().stream().mapToLong(Integer::longValue).sum());
+                List<MultiGauge.Row<?>> rows = sizes.entrySet().stream()
+                        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                        .limit(top)
+                        .<MultiGauge.Row<?>>map(entry -> MultiGauge.Row.of(Tags.of("user", entry.getKey()), entry.getValue()))
+                        .toList();
+                largest.register(rows, true);
+            } catch (RuntimeException e) {
+                logger.error("Backlog metrics refresh failed: {}", e.getMessage());
+            }
+        }, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.shutdown();
+        }
+    }
+
+    private Counter handshakes(String route) {
+        return Counter.builder(PREFIX + "handshakes")
+                .description("Отримані ключі рукостискання")
+                .tag("route", route)
+                .register(registry);
+    }
+
+    private Counter counter(Map<String, Counter> cache, String name, String operation) {
+        String tag = operation != null && OPERATIONS.contains(operation) ? operation : OTHER;
+        return cache.computeIfAbsent(tag, key -> Counter.builder(PREFIX + name).tag("operation", key).register(registry));
+    }
+}
@@ -0,0 +1,304 @@
+package org.example;
+
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Черга вихідних повідомлень однієї WebSocket-сесії.
+ * <p>
+ * Повідомлення ставляться в чергу з будь-якого потоку, а записуються в сесію
+ * лише одним завданням за раз, тому порядок доставки зберігається,
+ * а повільний клієнт займає не більше одного потоку пулу.
+ * <p>
+ * Черга обмежена кількістю повідомлень і їхнім сумарним розміром, а запис одного кадру — часом
+ * ({@link Limits}). Якщо клієнт не встигає, спрацьовує політика переповнення ({@link Overflow}):
+ * повідомлення не приймається (власник зберігає його як офлайн), відкидаються найстаріші статусні
+ * повідомлення або сесія закривається. Так кілька повільних мобільних клієнтів не вичерпують
+ * пам'ять чи потоки.
+ */
+public class OutboundMailbox {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundMailbox.class);
+
+    // Скільки повідомлень записується за один прохід, щоб не монополізувати потік пулу
+    private static final int DRAIN_BATCH = 64;
+
+    // Властивість Tomcat, що обмежує час блокуючого запису в сокет
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final Limits limits;
+    private final MailboxMetrics metrics;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closing = new AtomicBoolean();
+    private volatile long writeStartedAt; // 0, якщо зараз нічого не записується
+
+    public OutboundMailbox(WebSocketSession session, Executor executor, Limits limits, MailboxMetrics metrics) {
+        this.session = session;
+        this.executor = executor;
+        this.limits = limits;
+        this.metrics = metrics;
+        limitBlockingSend();
+    }
+
+    /**
+     * Ставить повідомлення в чергу на відправку.
+     *
+     * @param message   текстовий або бінарний кадр
+     * @param droppable true для статусних повідомлень, які можна відкинути при переповненні
+     * @param callback  викликається після запису або помилки (може бути null); для відкинутих повідомлень не викликається
+     * @return false, якщо повідомлення не прийняте (черга переповнена, клієнт не встигає або сесія закривається)
+     */
+    public boolean offer(WebSocketMessage<?> message, boolean droppable, Callback callback) {
+        if (closing.get()) {
+            return reject();
+        }
+        if (isStalled()) {
+            metrics.sendTimeExceeded.incrementAndGet();
+            return overflow();
+        }
+
+        int length = lengthOf(message);
+        if (!reserve(length) && !(limits.overflow == Overflow.DROP_OLDEST_STATUS && dropStatusFor(length) && reserve(length))) {
+            return overflow();
+        }
+        queue.offer(new Entry(message, length, droppable, callback));
+        schedule();
+        return true;
+    }
+
+    /**
+     * Закриває чергу: всі невідправлені повідомлення завершуються з помилкою,
+     * щоб власник міг зберегти їх як офлайн-повідомлення.
+     */
+    public void close() {
+        closing.set(true);
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            release(entry);
+            complete(entry, new IOException("Session closed: " + session.getId()));
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Розмір кадру для лімітів черги. Для текстового кадру — кількість символів уже готового рядка:
+     * {@link WebSocketMessage#getPayloadLength()} кодував би кожен кадр у UTF-8 ще раз лише заради підрахунку байтів.
+     */
+    private static int lengthOf(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text ? text.getPayload().length() : message.getPayloadLength();
+    }
+
+    private boolean reserve(int length) {
+        if (size.incrementAndGet() > limits.maxMessages) {
+            size.decrementAndGet();
+            return false;
+        }
+        // Одне повідомлення, більше за ліміт, приймається в порожню чергу — інакше його не можна було б відправити ніколи
+        long total = bytes.addAndGet(length);
+        if (total > limits.maxBytes && total != length) {
+            bytes.addAndGet(-length);
+            size.decrementAndGet();
+            return false;
+        }
+        metrics.queuedMessages.incrementAndGet();
+        metrics.queuedBytes.addAndGet(length);
+        return true;
+    }
+
+    private void release(Entry entry) {
+        size.decrementAndGet();
+        bytes.addAndGet(-entry.length);
+        metrics.queuedMessages.decrementAndGet();
+        metrics.queuedBytes.addAndGet(-entry.length);
+    }
+
+    /**
+     * Відкидає найстаріші статусні повідомлення, доки не звільниться місце для нового.
+     *
+     * @return true, якщо щось було відкинуто
+     */
+    private boolean dropStatusFor(int length) {
+        boolean dropped = false;
+        for (Iterator<Entry> iterator = queue.iterator(); iterator.hasNext(); ) {
+            if (size.get() < limits.maxMessages && bytes.get() + length <= limits.maxBytes) {
+                break;
+            }
+            Entry entry = iterator.next();
+            if (entry.droppable && queue.remove(entry)) {
+                release(entry);
+                metrics.droppedStatus.incrementAndGet();
+                dropped = true;
+            }
+        }
+        return dropped;
+    }
+
+    private boolean isStalled() {
+        long started = writeStartedAt;
+        return started != 0 && System.currentTimeMillis() - started > limits.sendTimeLimitMillis;
+    }
+
+    /**
+     * Застосовує політику переповнення, коли повідомлення не вдалося поставити в чергу.
+     */
+    private boolean overflow() {
+        if (limits.overflow == Overflow.CLOSE && closing.compareAndSet(false, true)) {
+            metrics.closedSessions.incrementAndGet();
+            logger.warn("Closing slow session {}: {} queued messages, {} bytes", session.getId(), size.get(), bytes.get());
+            // Закриття може блокуватися на тому самому сокеті, тож виконується не в потоці відправника
+            executor.execute(() -> {
+                try {
+                    session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException e) {
+                    logger.error("Failed to close slow session {}: {}", session.getId(), e.getMessage());
+                }
+            });
+        }
+        return reject();
+    }
+
+    private boolean reject() {
+        metrics.rejected.incrementAndGet();
+        return false;
+    }
+
+    private void schedule() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            Entry entry;
+            int written = 0;
+            while (written < DRAIN_BATCH && (entry = queue.poll()) != null) {
+                release(entry);
+                write(entry);
+                written++;
+            }
+        } finally {
+            draining.set(false);
+            // Якщо за час запису з'явились нові повідомлення — плануємо наступний прохід
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        if (!session.isOpen()) {
+            complete(entry, new IOException("Session closed: " + session.getId()));
+            return;
+        }
+        writeStartedAt = System.currentTimeMillis();
+        try {
+            session.sendMessage(entry.message);
+            complete(entry, null);
+        } catch (IOException | RuntimeException e) {
+            complete(entry, e);
+        } finally {
+            writeStartedAt = 0;
+        }
+    }
+
+    private void complete(Entry entry, Exception error) {
+        if (entry.callback == null) {
+            if (error != null) {
+                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), error.getMessage());
+            }
+            return;
+        }
+        try {
+            entry.callback.onComplete(error);
+        } catch (RuntimeException e) {
+            logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), e.getMessage());
+        }
+    }
+
+    /**
+     * Обмежує час блокуючого запису на рівні контейнера, щоб завислий сокет не тримав потік пулу безкінечно.
+     * Для контейнерів, відмінних від Tomcat, властивість просто ігнорується.
+     */
+    private void limitBlockingSend() {
+        try {
+            Object nativeSession = session instanceof NativeWebSocketSession container ? container.getNativeSession() : null;
+            if (nativeSession instanceof Session standard) {
+                standard.getUserProperties().put(BLOCKING_SEND_TIMEOUT, limits.sendTimeLimitMillis);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Cannot set send timeout for session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private record Entry(WebSocketMessage<?> message, int length, boolean droppable, Callback callback) {
+    }
+
+    /**
+     * Обмеження черги однієї сесії.
+     *
+     * @param maxMessages         максимальна кількість повідомлень у черзі
+     * @param maxBytes            максимальний сумарний розмір повідомлень у черзі (текстові кадри рахуються в символах)
+     * @param sendTimeLimitMillis скільки може тривати запис одного кадру, перш ніж клієнт вважається повільним
+     * @param overflow            що робити, коли обмеження перевищено
+     */
+    public record Limits(int maxMessages, long maxBytes, long sendTimeLimitMillis, Overflow overflow) {
+    }
+
+    /**
+     * Політика для повідомлень, що не вміщаються в чергу.
+     */
+    public enum Overflow {
+        /**
+         * Повідомлення не приймається, власник зберігає його в офлайн-сховище.
+         */
+        SPILL,
+        /**
+         * Спочатку відкидаються найстаріші статусні повідомлення; якщо їх немає — як {@link #SPILL}.
+         */
+        DROP_OLDEST_STATUS,
+        /**
+         * Сесія закривається; всі невідправлені повідомлення зберігаються в офлайн-сховище.
+         */
+        CLOSE;
+
+        public static Overflow of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Результат запису повідомлення в сесію.
+     */
+    public interface Callback {
+
+        /**
+         * @param error null, якщо повідомлення записане успішно, інакше причина помилки
+         */
+        void onComplete(Exception error);
+    }
+}
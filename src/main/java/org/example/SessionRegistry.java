@@ -0,0 +1,92 @@
+package org.example;
+
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реєстр активних WebSocket-сесій.
+ * Тримає двонапрямний індекс userId ↔ сесія, щоб пошук власника сесії при відключенні
+ * виконувався за O(1), а не переглядом усієї мапи клієнтів.
+ */
+public class SessionRegistry {
+
+    private final Map<String, WebSocketSession> clients;
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>(); // sessionId -> userId
+
+    public SessionRegistry(Map<String, WebSocketSession> clients) {
+        this.clients = clients;
+    }
+
+    /**
+     * Реєструє сесію за користувачем, якщо для нього ще немає активної сесії.
+     *
+     * @param userId  ідентифікатор користувача
+     * @param session WebSocket-сесія клієнта
+     * @return сесія, яка була зареєстрована раніше, або null, якщо реєстрація успішна
+     */
+    public WebSocketSession putIfAbsent(String userId, WebSocketSession session) {
+        WebSocketSession current = clients.putIfAbsent(userId, session);
+        if (current == null) {
+            sessionUsers.put(session.getId(), userId);
+        }
+        return current;
+    }
+
+    /**
+     * Повертає сесію користувача.
+     *
+     * @param userId ідентифікатор користувача
+     * @return сесія або null, якщо користувач не підключений
+     */
+    public WebSocketSession getSession(String userId) {
+        return clients.get(userId);
+    }
+
+    /**
+     * Повертає ідентифікатор користувача, якому належить сесія.
+     *
+     * @param session WebSocket-сесія клієнта
+     * @return ідентифікатор користувача або null, якщо сесія не зареєстрована
+     */
+    public String getUserId(WebSocketSession session) {
+        return sessionUsers.get(session.getId());
+    }
+
+    public boolean contains(String userId) {
+        return clients.containsKey(userId);
+    }
+
+    /**
+     * Видаляє сесію з реєстру (наприклад, після закриття з'єднання).
+     * Запис користувача видаляється лише тоді, коли він досі вказує саме на цю сесію,
+     * тож нова сесія того ж користувача не буде втрачена.
+     *
+     * @param session WebSocket-сесія, яку потрібно видалити
+     * @return ідентифікатор користувача або null, якщо сесія не була зареєстрована
+     */
+    public String remove(WebSocketSession session) {
+        String userId = sessionUsers.remove(session.getId());
+        if (userId != null) {
+            clients.remove(userId, session);
+        }
+        return userId;
+    }
+
+    /**
+     * Знімає користувача з активних незалежно від того, яка сесія йому належить.
+     * Сесія лишається прив'язаною до користувача: її закриття ({@link #remove(WebSocketSession)})
+     * все одно поверне userId, щоб прибрати решту даних користувача.
+     *
+     * @param userId ідентифікатор користувача
+     * @return сесія, яка була знята, або null
+     */
+    public WebSocketSession detach(String userId) {
+        return clients.remove(userId);
+    }
+
+    public Map<String, WebSocketSession> getClients() {
+        return clients;
+    }
+}
@@ -0,0 +1,127 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Набір однопотокових виконавців (шардів) для обробки повідомлень.
+ * <p>
+ * Завдання з однаковим ключем (ідентифікатором користувача або пари користувачів) завжди потрапляють
+ * в один шард і виконуються послідовно, тож операції над станом одного користувача не потребують
+ * блокувань і зберігають порядок, а завдання різних користувачів виконуються паралельно на всіх ядрах.
+ * <p>
+ * Нова робота від клієнтів приймається через {@link #tryExecute}: якщо черга шарду вже містить
+ * {@code queueCapacity} завдань, завдання відхиляється, тож повільний шард не накопичує необмежену чергу.
+ * Продовження вже прийнятої роботи (відтворення, підтвердження запису) ставляться через {@link #execute}
+ * без обмеження: відхилити їх означало б загубити стан, а чекати на місце з потоку іншого шарду — ризик взаємоблокування.
+ */
+public class ShardExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ShardExecutor.class);
+
+    private final ThreadPoolExecutor[] shards;
+    private final int queueCapacity;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param count         кількість шардів; 0 або менше — за кількістю процесорів
+     * @param queueCapacity скільки завдань може чекати в черзі одного шарду, перш ніж {@link #tryExecute} почне відхиляти нові
+     */
+    public ShardExecutor(int count, int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        int size = count > 0 ? count : Runtime.getRuntime().availableProcessors();
+        this.shards = new ThreadPoolExecutor[size];
+        for (int i = 0; i < size; i++) {
+            String name = "shard-" + i;
+            shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logger.info("Message processing: {} shards, queue capacity {}", size, queueCapacity);
+    }
+
+    /**
+     * Приймає нову роботу в шард, якому належить ключ, якщо його черга не заповнена.
+     *
+     * @param key  ключ власника (ідентифікатор користувача)
+     * @param task завдання
+     * @return false, якщо черга шарду заповнена і завдання відхилене
+     */
+    public boolean tryExecute(String key, Runnable task) {
+        ThreadPoolExecutor shard = shardOf(key);
+        if (shard.getQueue().size() >= queueCapacity) {
+            rejected.increment();
+            return false;
+        }
+        submit(shard, key, task);
+        return true;
+    }
+
+    /**
+     * Виконує завдання в шарді, якому належить ключ, незалежно від заповненості черги.
+     * Для продовжень уже прийнятої роботи; нову роботу від клієнтів слід приймати через {@link #tryExecute}.
+     *
+     * @param key  ключ власника (ідентифікатор користувача)
+     * @param task завдання
+     */
+    public void execute(String key, Runnable task) {
+        submit(shardOf(key), key, task);
+    }
+
+    private ThreadPoolExecutor shardOf(String key) {
+        return shards[Math.floorMod(key.hashCode(), shards.length)];
+    }
+
+    private static void submit(ThreadPoolExecutor shard, String key, Runnable task) {
+        shard.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Помилка одного повідомлення не повинна зупиняти шард
+                logger.error("Shard task for {} failed: {}", key, e.getMessage(), e);
+            }
+        });
+    }
+
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * @return скільки завдань чекає у чергах усіх шардів
+     */
+    public int queued() {
+        int queued = 0;
+        for (ThreadPoolExecutor shard : shards) {
+            queued += shard.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * @param shard номер шарду
+     * @return скільки завдань чекає в черзі шарду
+     */
+    public int queued(int shard) {
+        return shards[shard].getQueue().size();
+    }
+
+    /**
+     * @return скільки завдань відхилено через заповнену чергу
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Збирає статусні повідомлення для однієї сесії протягом короткого вікна і передає їх однією пачкою,
+ * щоб кілька підтверджень (server, delivered, received) йшли одним кадром замість кількох.
+ * <p>
+ * Перше повідомлення для сесії відкриває вікно; все, що надійде до його закінчення, потрапляє в ту саму пачку.
+ * Вікно 0 вимикає об'єднання.
+ *
+ * @param <T> елемент пачки
+ */
+public class StatusCoalescer<T> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(StatusCoalescer.class);
+
+    private final long windowMillis;
+    private final ScheduledExecutorService timer;
+    private final Map<String, Batch<T>> pending = new ConcurrentHashMap<>(); // sessionId -> пачка
+    private volatile Flusher<T> flusher;
+
+    public StatusCoalescer(long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.timer = windowMillis > 0 ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "status-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * @param flusher отримує зібрані пачки
+     */
+    public void start(Flusher<T> flusher) {
+        this.flusher = flusher;
+    }
+
+    public boolean isEnabled() {
+        return timer != null;
+    }
+
+    /**
+     * Додає повідомлення до пачки сесії.
+     *
+     * @param session WebSocket-сесія отримувача
+     * @param item    повідомлення
+     */
+    public void add(WebSocketSession session, T item) {
+        pending.compute(session.getId(), (id, batch) -> {
+            if (batch == null) {
+                batch = new Batch<>(session);
+                timer.schedule(() -> flush(id), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.items.add(item);
+            return batch;
+        });
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdown();
+        }
+        // Невідправлені пачки передаються одразу, щоб їх обробив власник
+        pending.keySet().forEach(this::flush);
+    }
+
+    private void flush(String sessionId) {
+        // Після видалення пачка більше не змінюється: нові повідомлення відкривають нову
+        Batch<T> batch = pending.remove(sessionId);
+        if (batch == null) {
+            return;
+        }
+        try {
+            flusher.flush(batch.session, batch.items);
+        } catch (RuntimeException e) {
+            logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), e.getMessage());
+        }
+    }
+
+    private record Batch<T>(WebSocketSession session, List<T> items) {
+        Batch(WebSocketSession session) {
+            this(session, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Отримувач зібраних пачок.
+     */
+    public interface Flusher<T> {
+
+        void flush(WebSocketSession session, List<T> items);
+    }
+}
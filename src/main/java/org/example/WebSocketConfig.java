@@ -1,25 +1,266 @@
 package org.example;
 
+import org.example.cluster.ClusterBus;
+import org.example.cluster.SingleNodeClusterBus;
+import org.example.cluster.TcpClusterBus;
+import org.example.presence.PresenceTracker;
+import org.example.process.EnvelopeCodec;
+import org.example.process.JsonOrgEnvelopeCodec;
+import org.example.process.StreamingEnvelopeCodec;
+import org.example.store.HandshakeKeyStore;
+import org.example.store.InMemoryOfflineMessageStore;
+import org.example.store.MessageStatusTable;
+import org.example.store.OfflineMessageStore;
+import org.example.store.SegmentLogOfflineMessageStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
     private final Map<String, WebSocketSession> clients = new ConcurrentHashMap<>();
-    private final Map<String, List<String>> saveMessages = new ConcurrentHashMap<>();
     private final Map<String, String> clientStatus = new ConcurrentHashMap<>();
-    private final Map<String, String> clientsKey= new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Value("${server-cube.executor.mode:platform}")
+    private String executorMode;
+
+    @Value("${server-cube.executor.pool-size:10}")
+    private int executorPoolSize;
+
+    @Value("${server-cube.shards.count:0}")
+    private int shardCount;
+
+    @Value("${server-cube.shards.queue-capacity:10000}")
+    private int shardQueueCapacity;
+
+    @Value("${server-cube.mailbox.max-messages:1024}")
+    private int mailboxMaxMessages;
+
+    @Value("${server-cube.mailbox.max-bytes:1048576}")
+    private long mailboxMaxBytes;
+
+    @Value("${server-cube.mailbox.send-time-limit-ms:10000}")
+    private long mailboxSendTimeLimitMs;
+
+    @Value("${server-cube.mailbox.overflow:spill}")
+    private String mailboxOverflow;
+
+    @Value("${server-cube.codec:streaming}")
+    private String codec;
+
+    @Value("${server-cube.store.type:memory}")
+    private String storeType;
+
+    @Value("${server-cube.store.directory:data/offline}")
+    private String storeDirectory;
+
+    @Value("${server-cube.store.segment-size-mb:64}")
+    private int storeSegmentSizeMb;
+
+    @Value("${server-cube.store.flush-interval-ms:10}")
+    private long storeFlushIntervalMs;
+
+    @Value("${server-cube.replay.page-size:100}")
+    private int replayPageSize;
+
+    @Value("${server-cube.replay.window:32}")
+    private int replayWindow;
+
+    @Value("${server-cube.replay.idle-timeout-ms:30000}")
+    private long replayIdleTimeoutMs;
+
+    @Value("${server-cube.status.ttl-seconds:600}")
+    private long statusTtlSeconds;
+
+    @Value("${server-cube.status.max-entries:1000000}")
+    private int statusMaxEntries;
+
+    @Value("${server-cube.status.coalesce-window-ms:0}")
+    private long statusCoalesceWindowMs;
+
+    @Value("${server-cube.presence.timeout-ms:6000}")
+    private long presenceTimeoutMs;
+
+    @Value("${server-cube.presence.tick-ms:500}")
+    private long presenceTickMs;
+
+    @Value("${server-cube.cluster.mode:none}")
+    private String clusterMode;
+
+    @Value("${server-cube.cluster.node-id:node-1}")
+    private String clusterNodeId;
+
+    @Value("${server-cube.cluster.port:7100}")
+    private int clusterPort;
+
+    @Value("${server-cube.cluster.bind-address:127.0.0.1}")
+    private String clusterBindAddress;
+
+    @Value("${server-cube.cluster.secret:}")
+    private String clusterSecret;
+
+    @Value("${server-cube.cluster.peers:}")
+    private String clusterPeers;
+
+    @Value("${server-cube.metrics.backlog-top:10}")
+    private int metricsBacklogTop;
+
+    @Value("${server-cube.metrics.backlog-refresh-ms:10000}")
+    private long metricsBacklogRefreshMs;
+
+    @Value("${server-cube.log.colorize:true}")
+    private boolean logColorize;
+
+    @Value("${server-cube.log.payload-max-chars:256}")
+    private int logPayloadMaxChars;
+
+    @Value("${server-cube.log.redact-fields:message,publicKey}")
+    private String logRedactFields;
+
+    @Value("${server-cube.log.sampling:}")
+    private String logSampling;
+
+    public WebSocketConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void configureLogging() {
+        LogMessage.configure(logColorize, logPayloadMaxChars, Arrays.asList(logRedactFields.split(",")));
+        LogMessage.configureSampling(logSampling);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService deliveryExecutor() {
+        return DeliveryExecutors.create(executorMode, executorPoolSize);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ShardExecutor shardExecutor() {
+        return new ShardExecutor(shardCount, shardQueueCapacity);
+    }
+
+    @Bean
+    public OutboundMailbox.Limits mailboxLimits() {
+        return new OutboundMailbox.Limits(mailboxMaxMessages, mailboxMaxBytes, mailboxSendTimeLimitMs,
+                OutboundMailbox.Overflow.of(mailboxOverflow));
+    }
+
+    @Bean
+    public MailboxMetrics mailboxMetrics() {
+        return new MailboxMetrics();
+    }
+
+    @Bean
+    public EnvelopeCodec envelopeCodec() {
+        return switch (codec) {
+            case "streaming" -> new StreamingEnvelopeCodec();
+            case "org-json" -> new JsonOrgEnvelopeCodec();
+            default -> throw new IllegalArgumentException("Unknown envelope codec: " + codec);
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public OfflineMessageStore offlineMessageStore() {
+        return switch (storeType) {
+            case "memory" -> new InMemoryOfflineMessageStore();
+            case "log" -> new SegmentLogOfflineMessageStore(Path.of(storeDirectory), storeSegmentSizeMb * 1024L * 1024,
+                    storeFlushIntervalMs, envelopeCodec());
+            default -> throw new IllegalArgumentException("Unknown offline store type: " + storeType);
+        };
+    }
+
+    @Bean
+    public BacklogReplayer backlogReplayer() {
+        return new BacklogReplayer(offlineMessageStore(), shardExecutor(), replayPageSize, replayWindow, replayIdleTimeoutMs);
+    }
+
+    @Bean
+    public MessageStatusTable messageStatusTable() {
+        return new MessageStatusTable(statusTtlSeconds * 1000, statusMaxEntries);
+    }
+
+    @Bean
+    public HandshakeKeyStore handshakeKeyStore() {
+        return new HandshakeKeyStore();
+    }
+
+    @Bean(destroyMethod = "close")
+    public StatusCoalescer<MessageWebSocketHandler.PendingStatus> statusCoalescer() {
+        return new StatusCoalescer<>(statusCoalesceWindowMs);
+    }
+
+    @Bean(destroyMethod = "close")
+    public MessagingMetrics messagingMetrics() {
+        MessagingMetrics metrics = new MessagingMetrics(meterRegistry);
+        metrics.gauge("sessions.online", clients, Map::size);
+        metrics.gauge("status.table.size", messageStatusTable(), MessageStatusTable::size);
+        metrics.counter("status.table.expired", messageStatusTable(), MessageStatusTable::expiredCount);
+        metrics.counter("status.table.evicted", messageStatusTable(), MessageStatusTable::evictedCount);
+        metrics.gauge("handshake.pairs", handshakeKeyStore(), HandshakeKeyStore::size);
+        metrics.gauge("presence.tracked", presenceTracker(), PresenceTracker::size);
+        metrics.gauge("replay.active", backlogReplayer(), BacklogReplayer::size);
+        metrics.gauge("shards.queued", shardExecutor(), ShardExecutor::queued);
+        for (int shard = 0; shard < shardExecutor().size(); shard++) {
+            int index = shard;
+            metrics.gauge("shards.queue.depth", Tags.of("shard", String.valueOf(index)), shardExecutor(), s -> s.queued(index));
+        }
+        metrics.counter("shards.rejected", shardExecutor(), ShardExecutor::rejected);
+
+        MailboxMetrics mailbox = mailboxMetrics();
+        metrics.gauge("mailbox.queued.messages", mailbox, MailboxMetrics::queuedMessages);
+        metrics.gauge("mailbox.queued.bytes", mailbox, MailboxMetrics::queuedBytes);
+        metrics.counter("mailbox.rejected", mailbox, MailboxMetrics::rejected);
+        metrics.counter("mailbox.dropped.status", mailbox, MailboxMetrics::droppedStatus);
+        metrics.counter("mailbox.send.time.exceeded", mailbox, MailboxMetrics::sendTimeExceeded);
+        metrics.counter("mailbox.closed.sessions", mailbox, MailboxMetrics::closedSessions);
+
+        // Черга і активні потоки виконавця доставки (для пулу платформних потоків)
+        new ExecutorServiceMetrics(deliveryExecutor(), "delivery", List.of()).bindTo(meterRegistry);
+        metrics.trackBacklog(offlineMessageStore(), metricsBacklogTop, metricsBacklogRefreshMs);
+        return metrics;
+    }
+
+    @Bean(destroyMethod = "close")
+    public PresenceTracker presenceTracker() {
+        return new PresenceTracker(presenceTimeoutMs, presenceTickMs);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ClusterBus clusterBus() {
+        return switch (clusterMode) {
+            case "none" -> new SingleNodeClusterBus(clusterNodeId);
+            case "tcp" -> new TcpClusterBus(clusterNodeId, new InetSocketAddress(clusterBindAddress, clusterPort), clusterSecret,
+                    TcpClusterBus.parsePeers(clusterPeers));
+            default -> throw new IllegalArgumentException("Unknown cluster mode: " + clusterMode);
+        };
+    }
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new MessageWebSocketHandler(clients, saveMessages, clientStatus,clientsKey), "/ws").setAllowedOrigins("*");
+        MessageWebSocketHandler handler = new MessageWebSocketHandler(clients, offlineMessageStore(), messageStatusTable(), presenceTracker(), clientStatus, handshakeKeyStore(), deliveryExecutor(), shardExecutor(), mailboxLimits(), mailboxMetrics(), messagingMetrics(), statusCoalescer(), backlogReplayer(), envelopeCodec(), clusterBus());
+        registry.addHandler(handler, "/ws").setAllowedOrigins("*");
+        // Бінарний протокол: той самий обробник, сесія позначається атрибутом під час рукостискання
+        registry.addHandler(handler, "/ws-bin")
+                .addInterceptors(new BinaryFramingInterceptor())
+                .setAllowedOrigins("*");
     }
 }
-
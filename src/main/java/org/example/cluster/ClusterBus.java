@@ -0,0 +1,96 @@
+package org.example.cluster;
+
+import java.util.Map;
+
+/**
+ * Шина між вузлами кластера.
+ * <p>
+ * Кожен вузол тримає WebSocket-сесії лише своїх клієнтів. Шина розсилає іншим вузлам зміни присутності
+ * (з яких кожен вузол будує свій {@link UserDirectory}), пересилає повідомлення на вузол отримувача
+ * і передає рукостискання на вузол, який відповідає за пару користувачів.
+ */
+public interface ClusterBus extends AutoCloseable {
+
+    /**
+     * @return ідентифікатор поточного вузла
+     */
+    String nodeId();
+
+    /**
+     * Запускає обмін з іншими вузлами.
+     *
+     * @param listener отримує події від інших вузлів
+     */
+    void start(Listener listener);
+
+    /**
+     * Визначає вузол, відповідальний за ключ (однаковий на всіх вузлах при однаковій конфігурації).
+     *
+     * @param key ключ, наприклад пара користувачів рукостискання
+     * @return ідентифікатор вузла
+     */
+    String ownerOf(String key);
+
+    /**
+     * Розсилає іншим вузлам статус локального користувача.
+     *
+     * @param userId ідентифікатор користувача
+     * @param status статус ("disconnect" — користувач відключився від цього вузла)
+     */
+    void publishPresence(String userId, String status);
+
+    /**
+     * Пересилає повідомлення на вузол, де підключений отримувач. Передача асинхронна: true означає лише,
+     * що повідомлення стоїть у черзі до вузла, тож відповідальність за нього переходить до вузла отримувача
+     * тільки після {@link Listener#onDeliveryAck(String, String)}.
+     *
+     * @param nodeId     вузол отримувача
+     * @param receiverId ідентифікатор отримувача
+     * @param payload    JSON повідомлення
+     * @param ackKey     ключ, який вузол отримувача поверне, коли доставить або збереже повідомлення;
+     *                   null — підтвердження не потрібне
+     * @return false, якщо вузол недоступний і повідомлення не передане
+     */
+    boolean deliver(String nodeId, String receiverId, String payload, String ackKey);
+
+    /**
+     * Передає рукостискання на вузол, відповідальний за пару користувачів.
+     *
+     * @return false, якщо вузол недоступний
+     */
+    boolean handshake(String nodeId, String senderId, String receiverId, String publicKey);
+
+    @Override
+    void close();
+
+    /**
+     * Слухач подій від інших вузлів.
+     */
+    interface Listener {
+
+        /**
+         * @return статуси локальних користувачів для передачі вузлу, який щойно підключився
+         */
+        Map<String, String> localPresence();
+
+        void onRemotePresence(String nodeId, String userId, String status);
+
+        /**
+         * Вузол став недоступним: його користувачі вважаються відключеними.
+         */
+        void onNodeDown(String nodeId);
+
+        /**
+         * Повідомлення від іншого вузла. Після повернення вважається доставленим або збереженим:
+         * якщо відправник просив підтвердження, шина надсилає його одразу після виклику.
+         */
+        void onRemoteDelivery(String receiverId, String payload);
+
+        /**
+         * Вузол отримувача доставив або зберіг повідомлення, передане з {@code ackKey}.
+         */
+        void onDeliveryAck(String receiverId, String ackKey);
+
+        void onRemoteHandshake(String senderId, String receiverId, String publicKey);
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.cluster;
+
+/**
+ * Шина для роботи без кластера: інших вузлів немає, всі ключі належать поточному вузлу.
+ */
+public class SingleNodeClusterBus implements ClusterBus {
+
+    private final String nodeId;
+
+    public SingleNodeClusterBus(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+    }
+
+    @Override
+    public String ownerOf(String key) {
+        return nodeId;
+    }
+
+    @Override
+    public void publishPresence(String userId, String status) {
+    }
+
+    @Override
+    public boolean deliver(String nodeId, String receiverId, String payload, String ackKey) {
+        return false;
+    }
+
+    @Override
+    public boolean handshake(String nodeId, String senderId, String receiverId, String publicKey) {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,463 @@
+package org.example.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Шина кластера поверх TCP: кожен вузол слухає власний порт і тримає по одному вихідному з'єднанню
+ * до кожного вузла зі статичного списку. Підходить для запуску кількох екземплярів на одній машині
+ * ({@code 127.0.0.1} з різними портами) або в невеликій приватній мережі.
+ * <p>
+ * Кадр: {@code [byte тип][рядки полів]}, рядок — {@code [int довжина][UTF-8]}, довжина не більша
+ * за {@link #MAX_FIELD_BYTES}. Вузли перевіряють одне одного: вузол, що приймає з'єднання, спершу надсилає
+ * випадковий виклик; вузол, що підключається, відповідає {@code HELLO} зі своїм ідентифікатором, HMAC-SHA256
+ * спільного секрету над типом кадру, викликом та ідентифікатором і власним викликом; вузол, що прийняв з'єднання,
+ * відповідає {@code WELCOME} з таким самим підписом над власним викликом і своїм ідентифікатором. Тип кадру в підписі
+ * не дає видати підпис однієї сторони за підпис іншої. З'єднання від невідомих вузлів, до вузла, що не довів
+ * свою особу, або з неправильним підписом закриваються.
+ * Після привітання вузол надсилає знімок статусів своїх користувачів, тож вузол, що перезапустився,
+ * відновлює довідник без окремого запиту.
+ * <p>
+ * Відправка не блокує: кадр стає в обмежену чергу вузла, а підключення, запис і пінг виконує окремий
+ * потік кожного вузла. Поки вузол недоступний або його черга заповнена, відправка повертає false.
+ * Закриття вхідного з'єднання означає, що вузол недоступний.
+ */
+public class TcpClusterBus implements ClusterBus {
+    private static final Logger logger = LoggerFactory.getLogger(TcpClusterBus.class);
+
+    private static final byte HELLO = 1;
+    private static final byte PING = 2;
+    private static final byte PRESENCE = 3;
+    private static final byte DELIVER = 4;
+    private static final byte HANDSHAKE = 5;
+    private static final byte DELIVERED = 6;
+    private static final byte WELCOME = 7;
+
+    private static final long RECONNECT_MILLIS = 1000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_FIELD_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_QUEUED_FRAMES = 10_000;
+    private static final int CHALLENGE_BYTES = 32;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String NO_ACK = "";
+
+    private final String nodeId;
+    private final InetSocketAddress bindAddress;
+    private final SecretKeySpec secret;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final List<String> nodes; // Ідентифікатори всіх вузлів, включно з поточним, у відсортованому порядку
+    private final Map<String, Socket> inbound = new ConcurrentHashMap<>(); // вузол -> поточне вхідне з'єднання
+
+    private volatile Listener listener;
+    private volatile boolean closed;
+    private ServerSocket server;
+
+    /**
+     * @param nodeId      ідентифікатор поточного вузла
+     * @param bindAddress адреса і порт для з'єднань від інших вузлів
+     * @param secret      спільний для всіх вузлів секрет, яким підписується привітання
+     * @param peers       інші вузли: ідентифікатор → адреса
+     */
+    public TcpClusterBus(String nodeId, InetSocketAddress bindAddress, String secret, Map<String, InetSocketAddress> peers) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Cluster secret must be set for the tcp cluster mode");
+        }
+        this.nodeId = nodeId;
+        this.bindAddress = bindAddress;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        peers.forEach((id, address) -> this.peers.put(id, new Peer(id, address)));
+
+        List<String> all = new ArrayList<>(peers.keySet());
+        all.add(nodeId);
+        Collections.sort(all);
+        this.nodes = List.copyOf(all);
+    }
+
+    /**
+     * Розбирає список вузлів у форматі {@code id@host:port,id@host:port}.
+     */
+    public static Map<String, InetSocketAddress> parsePeers(String peers) {
+        Map<String, InetSocketAddress> result = new LinkedHashMap<>();
+        for (String peer : peers.split(",")) {
+            String trimmed = peer.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int at = trimmed.indexOf('@');
+            int colon = trimmed.lastIndexOf(':');
+            if (at <= 0 || colon < at) {
+                throw new IllegalArgumentException("Invalid cluster peer, expected id@host:port: " + trimmed);
+            }
+            result.put(trimmed.substring(0, at),
+                    new InetSocketAddress(trimmed.substring(at + 1, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return result;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        try {
+            server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(bindAddress);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot listen for cluster connections on " + bindAddress, e);
+        }
+        Thread acceptor = new Thread(this::accept, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        peers.values().forEach(Peer::start);
+        logger.info("Cluster node {} listening on {}, peers: {}", nodeId, bindAddress, peers.keySet());
+    }
+
+    @Override
+    public String ownerOf(String key) {
+        return nodes.get(Math.floorMod(key.hashCode(), nodes.size()));
+    }
+
+    @Override
+    public void publishPresence(String userId, String status) {
+        for (Peer peer : peers.values()) {
+            peer.send(PRESENCE, userId, status);
+        }
+    }
+
+    @Override
+    public boolean deliver(String nodeId, String receiverId, String payload, String ackKey) {
+        Peer peer = peers.get(nodeId);
+        return peer != null && peer.send(DELIVER, receiverId, payload, ackKey == null ? NO_ACK : ackKey);
+    }
+
+    @Override
+    public boolean handshake(String nodeId, String senderId, String receiverId, String publicKey) {
+        Peer peer = peers.get(nodeId);
+        return peer != null && peer.send(HANDSHAKE, senderId, receiverId, publicKey);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(server);
+        peers.values().forEach(Peer::stop);
+        inbound.values().forEach(TcpClusterBus::closeQuietly);
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Thread reader = new Thread(() -> read(socket), "cluster-reader-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Cluster accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        String remote = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            remote = authenticate(socket, in);
+            Socket previous = inbound.put(remote, socket);
+            if (previous != null) {
+                closeQuietly(previous);
+            }
+            logger.info("Cluster node {} connected", remote);
+            Peer origin = peers.get(remote);
+            while (true) {
+                byte type = in.readByte();
+                switch (type) {
+                    case PING -> {
+                    }
+                    case PRESENCE -> listener.onRemotePresence(remote, readString(in), readString(in));
+                    case DELIVER -> {
+                        String receiverId = readString(in);
+                        String payload = readString(in);
+                        String ackKey = readString(in);
+                        listener.onRemoteDelivery(receiverId, payload);
+                        if (!ackKey.isEmpty()) {
+                            // Якщо підтвердження не дійде, відправник перешле повідомлення ще раз
+                            origin.send(DELIVERED, receiverId, ackKey);
+                        }
+                    }
+                    case DELIVERED -> listener.onDeliveryAck(readString(in), readString(in));
+                    case HANDSHAKE -> listener.onRemoteHandshake(readString(in), readString(in), readString(in));
+                    default -> throw new IOException("Unknown cluster frame type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // Вузол закрив з'єднання
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                logger.warn("Cluster connection from {} failed: {}", remote != null ? remote : socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            closeQuietly(socket);
+            if (remote != null && inbound.remove(remote, socket) && !closed) {
+                logger.warn("Cluster node {} disconnected", remote);
+                listener.onNodeDown(remote);
+            }
+        }
+    }
+
+    /**
+     * Надсилає виклик і перевіряє підписане привітання вузла, що підключився.
+     *
+     * @return ідентифікатор вузла
+     */
+    private String authenticate(Socket socket, DataInputStream in) throws IOException {
+        byte[] challenge = new byte[CHALLENGE_BYTES];
+        random.nextBytes(challenge);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.write(challenge);
+        out.flush();
+
+        socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+        if (in.readByte() != HELLO) {
+            throw new IOException("Expected HELLO");
+        }
+        String remote = readString(in);
+        byte[] signature = readBytes(in);
+        byte[] remoteChallenge = readBytes(in);
+        if (!peers.containsKey(remote) || !MessageDigest.isEqual(sign(HELLO, challenge, remote), signature)) {
+            throw new IOException("Rejected unauthenticated cluster connection");
+        }
+        if (remoteChallenge.length != CHALLENGE_BYTES) {
+            throw new IOException("Invalid cluster challenge from " + remote);
+        }
+        // Вузол, що підключився, теж перевіряє, що з'єднався саме з цим вузлом
+        byte[] proof = sign(WELCOME, remoteChallenge, nodeId);
+        out.writeByte(WELCOME);
+        out.writeInt(proof.length);
+        out.write(proof);
+        out.flush();
+        socket.setSoTimeout(0);
+        return remote;
+    }
+
+    /**
+     * @param type      тип кадру, в якому передається підпис ({@code HELLO} або {@code WELCOME})
+     * @param challenge виклик іншої сторони
+     * @param node      ідентифікатор вузла, що підписує
+     */
+    private byte[] sign(byte type, byte[] challenge, String node) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secret);
+            mac.update(type);
+            mac.update(challenge);
+            return mac.doFinal(node.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign cluster handshake", e);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FIELD_BYTES) {
+            throw new IOException("Invalid cluster field length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // Закриваємо в будь-якому разі
+        }
+    }
+
+    /**
+     * Кадр у черзі до вузла.
+     */
+    private record Frame(byte type, String[] fields) {
+    }
+
+    /**
+     * Вихідне з'єднання до іншого вузла. Відправники лише ставлять кадри в чергу;
+     * власний потік вузла підключається, пише кадри пачками і надсилає пінг, коли черга порожня.
+     */
+    private final class Peer {
+        private final String id;
+        private final InetSocketAddress address;
+        private final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>(MAX_QUEUED_FRAMES);
+        private final Thread writer;
+        private volatile boolean connected;
+        private volatile Socket socket;
+        private DataOutputStream out;
+
+        Peer(String id, InetSocketAddress address) {
+            this.id = id;
+            this.address = address;
+            this.writer = new Thread(this::run, "cluster-writer-" + id);
+            writer.setDaemon(true);
+        }
+
+        void start() {
+            writer.start();
+        }
+
+        /**
+         * @return false, якщо вузол недоступний або його черга заповнена
+         */
+        boolean send(byte type, String... fields) {
+            if (!connected) {
+                return false;
+            }
+            for (String field : fields) {
+                // У UTF-8 символ займає не більше трьох байтів; довше поле вузол отримувача відхилив би разом із з'єднанням
+                if (field.length() > MAX_FIELD_BYTES / 3) {
+                    logger.warn("Cluster frame for node {} is too large ({} chars)", id, field.length());
+                    return false;
+                }
+            }
+            if (queue.offer(new Frame(type, fields))) {
+                return true;
+            }
+            // Вузол не встигає читати: перепідключення надішле йому свіжий знімок статусів
+            logger.warn("Cluster node {} outbound queue is full, reconnecting", id);
+            closeQuietly(socket);
+            return false;
+        }
+
+        void stop() {
+            writer.interrupt();
+            closeQuietly(socket);
+        }
+
+        private void run() {
+            while (!closed) {
+                try {
+                    if (out == null && !connect()) {
+                        TimeUnit.MILLISECONDS.sleep(RECONNECT_MILLIS);
+                        continue;
+                    }
+                    Frame frame = queue.poll(RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        write(PING);
+                    }
+                    // Пишемо все, що вже накопичилось, і скидаємо буфер один раз
+                    while (frame != null) {
+                        write(frame.type, frame.fields);
+                        frame = queue.poll();
+                    }
+                    out.flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (IOException e) {
+                    if (!closed) {
+                        logger.warn("Lost connection to cluster node {}: {}", id, e.getMessage());
+                    }
+                    disconnect();
+                }
+            }
+            disconnect();
+        }
+
+        private boolean connect() {
+            Socket candidate = new Socket();
+            try {
+                candidate.connect(address, CONNECT_TIMEOUT_MILLIS);
+                candidate.setTcpNoDelay(true);
+                candidate.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(candidate.getInputStream());
+                byte[] challenge = new byte[CHALLENGE_BYTES];
+                in.readFully(challenge);
+                byte[] ownChallenge = new byte[CHALLENGE_BYTES];
+                random.nextBytes(ownChallenge);
+
+                socket = candidate;
+                out = new DataOutputStream(new BufferedOutputStream(candidate.getOutputStream()));
+                out.writeByte(HELLO);
+                writeField(nodeId.getBytes(StandardCharsets.UTF_8));
+                writeField(sign(HELLO, challenge, nodeId));
+                writeField(ownChallenge);
+                out.flush();
+                if (in.readByte() != WELCOME || !MessageDigest.isEqual(sign(WELCOME, ownChallenge, id), readBytes(in))) {
+                    logger.warn("Cluster node {} at {} failed authentication", id, address);
+                    throw new IOException("Rejected unauthenticated cluster node " + id);
+                }
+                candidate.setSoTimeout(0);
+                // Зміни, що з'являться під час знімка, стануть у чергу і підуть після нього
+                queue.clear();
+                connected = true;
+                for (Map.Entry<String, String> user : listener.localPresence().entrySet()) {
+                    write(PRESENCE, user.getKey(), user.getValue());
+                }
+                out.flush();
+                logger.info("Connected to cluster node {} at {}", id, address);
+                return true;
+            } catch (IOException e) {
+                closeQuietly(candidate);
+                disconnect();
+                return false;
+            }
+        }
+
+        private void disconnect() {
+            connected = false;
+            closeQuietly(socket);
+            socket = null;
+            out = null;
+            queue.clear();
+        }
+
+        private void write(byte type, String... fields) throws IOException {
+            out.writeByte(type);
+            for (String field : fields) {
+                writeField(field.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeField(byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Довідник користувачів, підключених до інших вузлів кластера: userId → вузол і статус.
+ * Будується з повідомлень присутності, які розсилає {@link ClusterBus}.
+ */
+public class UserDirectory {
+
+    private final Map<String, Location> users = new ConcurrentHashMap<>();
+
+    /**
+     * Записує, що користувач підключений до вузла.
+     */
+    public void put(String userId, String nodeId, String status) {
+        users.put(userId, new Location(nodeId, status));
+    }
+
+    /**
+     * Видаляє користувача, лише якщо він досі записаний за цим вузлом —
+     * інакше запізніле відключення від старого вузла стерло б нове підключення.
+     *
+     * @return true, якщо запис видалено
+     */
+    public boolean remove(String userId, String nodeId) {
+        Location location = users.get(userId);
+        return location != null && location.nodeId.equals(nodeId) && users.remove(userId, location);
+    }
+
+    /**
+     * Видаляє всіх користувачів вузла.
+     *
+     * @return ідентифікатори видалених користувачів
+     */
+    public List<String> removeNode(String nodeId) {
+        List<String> removed = new ArrayList<>();
+        users.forEach((userId, location) -> {
+            if (location.nodeId.equals(nodeId) && users.remove(userId, location)) {
+                removed.add(userId);
+            }
+        });
+        return removed;
+    }
+
+    /**
+     * @return вузол користувача або null, якщо він не підключений до інших вузлів
+     */
+    public String nodeOf(String userId) {
+        Location location = users.get(userId);
+        return location == null ? null : location.nodeId;
+    }
+
+    /**
+     * @return статус користувача на іншому вузлі або null
+     */
+    public String statusOf(String userId) {
+        Location location = users.get(userId);
+        return location == null ? null : location.status;
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    private record Location(String nodeId, String status) {
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.presence;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Підписки користувачів на присутність своїх контактів.
+ * <p>
+ * Список контактів користувача записується один раз (при реєстрації), а зворотний індекс
+ * «контакт → хто за ним стежить» дозволяє при зміні статусу одного користувача знайти лише
+ * тих, кому потрібно надіслати зміну, замість того щоб кожен клієнт періодично опитував
+ * статус усіх своїх контактів.
+ * <p>
+ * Також зберігається останній розісланий статус кожного користувача, щоб розсилати лише
+ * фактичні зміни. Кожна зміна отримує номер версії із загального зростаючого лічильника, тож клієнт,
+ * який пам'ятає версію останньої відповіді, може запитати лише зміни після неї.
+ * Відсутній запис означає статус {@link #DISCONNECT} з версією 0. Запис про відключення
+ * не видаляється, інакше клієнт не дізнався б, що контакт відключився після його версії.
+ */
+public class PresenceSubscriptions {
+
+    public static final String DISCONNECT = "disconnect";
+
+    private final Map<String, Set<String>> contacts = new ConcurrentHashMap<>();  // користувач -> його контакти
+    private final Map<String, Set<String>> watchers = new ConcurrentHashMap<>();  // контакт -> хто за ним стежить
+    private final Map<String, Stamp> published = new ConcurrentHashMap<>();       // користувач -> останній розісланий статус
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Замінює список контактів, за якими стежить користувач.
+     *
+     * @param userId      ідентифікатор користувача
+     * @param newContacts ідентифікатори контактів
+     * @return контакти, яких не було в попередньому списку
+     */
+    public Set<String> subscribe(String userId, Collection<String> newContacts) {
+        Set<String> current = Set.copyOf(newContacts);
+        Set<String> previous = contacts.put(userId, current);
+        if (previous != null) {
+            for (String contact : previous) {
+                if (!current.contains(contact)) {
+                    removeWatcher(contact, userId);
+                }
+            }
+        }
+        Set<String> added = new HashSet<>();
+        for (String contact : current) {
+            watchers.computeIfAbsent(contact, k -> ConcurrentHashMap.newKeySet()).add(userId);
+            if (previous == null || !previous.contains(contact)) {
+                added.add(contact);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Видаляє всі підписки користувача (наприклад, після закриття з'єднання).
+     *
+     * @param userId ідентифікатор користувача
+     */
+    public void unsubscribe(String userId) {
+        Set<String> previous = contacts.remove(userId);
+        if (previous != null) {
+            for (String contact : previous) {
+                removeWatcher(contact, userId);
+            }
+        }
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return контакти, за якими стежить користувач (порожня множина, якщо підписки немає)
+     */
+    public Set<String> contactsOf(String userId) {
+        return contacts.getOrDefault(userId, Set.of());
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return користувачі, які стежать за присутністю {@code userId}
+     */
+    public Set<String> watchersOf(String userId) {
+        return watchers.getOrDefault(userId, Set.of());
+    }
+
+    /**
+     * Запам'ятовує новий статус користувача.
+     *
+     * @param userId ідентифікатор користувача
+     * @param status поточний статус
+     * @return true, якщо статус відрізняється від останнього розісланого і його потрібно розіслати
+     */
+    public boolean publish(String userId, String status) {
+        Stamp current = published.get(userId);
+        while (true) {
+            String previous = current == null ? DISCONNECT : current.status;
+            if (previous.equals(status)) {
+                return false;
+            }
+            Stamp next = new Stamp(status, version.incrementAndGet());
+            boolean updated = current == null
+                    ? published.putIfAbsent(userId, next) == null
+                    : published.replace(userId, current, next);
+            if (updated) {
+                return true;
+            }
+            current = published.get(userId);
+        }
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return останній розісланий статус користувача
+     */
+    public String statusOf(String userId) {
+        Stamp stamp = published.get(userId);
+        return stamp == null ? DISCONNECT : stamp.status;
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return версія останньої зміни статусу користувача (0, якщо змін не було)
+     */
+    public long versionOf(String userId) {
+        Stamp stamp = published.get(userId);
+        return stamp == null ? 0 : stamp.version;
+    }
+
+    /**
+     * @return версія останньої зміни статусу серед усіх користувачів
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    private void removeWatcher(String contact, String userId) {
+        watchers.computeIfPresent(contact, (k, set) -> {
+            set.remove(userId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private record Stamp(String status, long version) {
+    }
+}
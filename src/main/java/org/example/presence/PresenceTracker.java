@@ -0,0 +1,134 @@
+package org.example.presence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Відстежує, чи клієнти надсилають пінги, і завчасно позначає неактивних як відключених.
+ * <p>
+ * Пінг лише оновлює час останньої активності. Кожен користувач стоїть у {@link TimingWheel}
+ * рівно один раз; коли його слот настає, фоновий потік або перепланує його на новий дедлайн,
+ * або (якщо пінгів не було довше за {@code timeoutMillis}) видаляє і повідомляє слухача.
+ * Перевірка присутності ({@link #isAlive(String)}) — чисте читання, без побічних ефектів.
+ */
+public class PresenceTracker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PresenceTracker.class);
+
+    private final Map<String, Long> lastPingTime = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final long tickMillis;
+    private final TimingWheel wheel;
+    private final ScheduledExecutorService ticker;
+
+    private volatile ExpiryListener listener;
+    private long lastTick;
+
+    public PresenceTracker(long timeoutMillis, long tickMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.tickMillis = tickMillis;
+        this.wheel = new TimingWheel(timeoutMillis, tickMillis);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускає фонову перевірку.
+     *
+     * @param listener отримує ідентифікатори користувачів, які перестали надсилати пінги
+     */
+    public void start(ExpiryListener listener) {
+        this.listener = listener;
+        this.lastTick = wheel.tickOf(System.currentTimeMillis());
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Реєструє пінг (або інший сигнал активності) користувача.
+     *
+     * @param userId ідентифікатор користувача
+     */
+    public void touch(String userId) {
+        long now = System.currentTimeMillis();
+        if (lastPingTime.put(userId, now) == null) {
+            wheel.schedule(userId, now + timeoutMillis);
+        }
+    }
+
+    /**
+     * Припиняє відстеження користувача (наприклад, після закриття з'єднання).
+     *
+     * @param userId ідентифікатор користувача
+     */
+    public void remove(String userId) {
+        lastPingTime.remove(userId);
+    }
+
+    /**
+     * @param userId ідентифікатор користувача
+     * @return true, якщо користувач надсилав пінг не пізніше ніж {@code timeoutMillis} тому
+     */
+    public boolean isAlive(String userId) {
+        Long last = lastPingTime.get(userId);
+        return last != null && System.currentTimeMillis() - last <= timeoutMillis;
+    }
+
+    public int size() {
+        return lastPingTime.size();
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            long currentTick = wheel.tickOf(now);
+            for (long tick = lastTick + 1; tick <= currentTick; tick++) {
+                for (String userId : wheel.drain(tick)) {
+                    check(userId, now);
+                }
+            }
+            lastTick = currentTick;
+        } catch (RuntimeException e) {
+            logger.error("Presence tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void check(String userId, long now) {
+        Long last = lastPingTime.get(userId);
+        if (last == null) {
+            return; // Користувача вже видалено
+        }
+        long deadline = last + timeoutMillis;
+        if (deadline > now) {
+            wheel.schedule(userId, deadline);
+        } else if (lastPingTime.remove(userId, last)) {
+            ExpiryListener current = listener;
+            if (current != null) {
+                current.onExpired(userId);
+            }
+        } else {
+            // Пінг надійшов одночасно з перевіркою — переплануємо від нового часу
+            check(userId, now);
+        }
+    }
+
+    /**
+     * Слухач закінчення присутності.
+     */
+    public interface ExpiryListener {
+
+        void onExpired(String userId);
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.presence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хешоване колесо таймерів: кожен слот відповідає одному такту, ключ потрапляє у слот свого дедлайну.
+ * Планування та вибірка слоту — O(1) незалежно від кількості ключів.
+ * Дедлайни мають бути не далі, ніж на {@code slots - 1} тактів від поточного часу.
+ * Ключ з дедлайном у вже вибраному такті потрапляє в наступний такт, а не чекає повного оберту колеса.
+ */
+final class TimingWheel {
+
+    private final List<Set<String>> slots;
+    private final long tickMillis;
+    private volatile long drainedTick = Long.MIN_VALUE; // останній вибраний такт
+
+    TimingWheel(long spanMillis, long tickMillis) {
+        this.tickMillis = tickMillis;
+        int count = (int) ((spanMillis + tickMillis - 1) / tickMillis) + 2;
+        this.slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            slots.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    void schedule(String key, long deadlineMillis) {
+        long tick = Math.max(tickOf(deadlineMillis), drainedTick + 1);
+        slots.get(slotOf(tick)).add(key);
+    }
+
+    /**
+     * Повертає і очищає слот такту.
+     */
+    String[] drain(long tick) {
+        drainedTick = tick;
+        Set<String> slot = slots.get(slotOf(tick));
+        String[] keys = slot.toArray(new String[0]);
+        for (String key : keys) {
+            slot.remove(key);
+        }
+        return keys;
+    }
+
+    long tickOf(long timeMillis) {
+        return timeMillis / tickMillis;
+    }
+
+    private int slotOf(long tick) {
+        return (int) (tick % slots.size());
+    }
+}
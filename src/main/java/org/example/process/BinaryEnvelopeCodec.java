@@ -0,0 +1,123 @@
+package org.example.process;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Компактне бінарне кодування {@link Envelope} для бінарних WebSocket-кадрів.
+ * <p>
+ * Формат: два байти маски присутніх полів (біт i відповідає {@link Envelope.Field} з порядковим номером i),
+ * далі для кожного присутнього поля у порядку {@link Envelope.Field} — довжина у форматі varint
+ * та байти значення в UTF-8. Імена ключів і лапки не передаються.
+ * Маска з бітами полів, яких немає в {@link Envelope.Field}, вважається кадром іншої версії формату і відхиляється.
+ */
+public class BinaryEnvelopeCodec {
+
+    private static final int KNOWN_FIELDS = (1 << Envelope.Field.all().length) - 1;
+
+    /**
+     * Кодує конверт. Поля зі значенням null не записуються.
+     *
+     * @param envelope конверт
+     * @return байти закодованого конверта
+     */
+    public byte[] encode(Envelope envelope) {
+        Envelope.Field[] fields = Envelope.Field.all();
+        byte[][] values = new byte[fields.length][];
+        int mask = 0;
+        int size = 2;
+        for (Envelope.Field field : fields) {
+            String value = field.get(envelope);
+            if (value != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                values[field.ordinal()] = bytes;
+                mask |= 1 << field.ordinal();
+                size += varintSize(bytes.length) + bytes.length;
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putShort((short) mask);
+        for (byte[] bytes : values) {
+            if (bytes != null) {
+                putVarint(out, bytes.length);
+                out.put(bytes);
+            }
+        }
+        return out.array();
+    }
+
+    /**
+     * Декодує конверт з буфера, починаючи з поточної позиції.
+     *
+     * @param buffer буфер з закодованим конвертом
+     * @return конверт
+     * @throws IllegalArgumentException якщо дані пошкоджені
+     */
+    public Envelope decode(ByteBuffer buffer) {
+        try {
+            Envelope envelope = new Envelope();
+            int mask = buffer.getShort() & 0xFFFF;
+            if ((mask & ~KNOWN_FIELDS) != 0) {
+                throw new IllegalArgumentException("Unknown fields in binary envelope mask: " + Integer.toHexString(mask));
+            }
+            for (Envelope.Field field : Envelope.Field.all()) {
+                if ((mask & (1 << field.ordinal())) == 0) {
+                    continue;
+                }
+                int length = getVarint(buffer);
+                if (length > buffer.remaining()) {
+                    throw new IllegalArgumentException("Field " + field.key() + " exceeds frame size");
+                }
+                field.set(envelope, readUtf8(buffer, length));
+            }
+            return envelope;
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary envelope", e);
+        }
+    }
+
+    private static String readUtf8(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative field length");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.process;
+
+/**
+ * Шаблони службових повідомлень, які формує сервер: статуси повідомлень ({@code server}, {@code received})
+ * та відкриті ключі рукостискання.
+ * <p>
+ * Ці повідомлення мають фіксований набір полів, тож ключі та сталі частини записані заздалегідь,
+ * а змінні значення екрануються одразу в буфер потоку ({@link StreamingEnvelopeCodec#buffer()}) —
+ * без Builder, проміжного JSONObject чи обходу полів конверта. Поля зі значенням null пропускаються,
+ * як і в {@link EnvelopeCodec#encode}. Саме через цей клас пакет {@code process} створює службові повідомлення.
+ */
+public final class ControlFrames {
+
+    private static final String SENDER_ID = "{\"senderId\":";
+    private static final String RECEIVER_ID = "\"receiverId\":";
+    private static final String STATUS_OPERATION = "\"operation\":\"" + OperationType.MESSAGE_STATUS + "\"";
+    private static final String HANDSHAKE_OPERATION = "\"operation\":\"" + OperationType.HANDSHAKE + "\"";
+    private static final String MESSAGE_STATUS = "\"messageStatus\":";
+    private static final String MESSAGE = "\"message\":";
+    private static final String MESSAGE_ID = "\"messageId\":";
+
+    private ControlFrames() {
+    }
+
+    /**
+     * Статус повідомлення: {@code {"senderId","receiverId","operation":"messageStatus","messageStatus","messageId"}}.
+     *
+     * @param senderId   Ідентифікатор відправника.
+     * @param receiverId Ідентифікатор отримувача.
+     * @param messageId  Ідентифікатор повідомлення.
+     * @param status     Статус повідомлення.
+     * @return пакет з конвертом та його JSON-представленням
+     */
+    public static Packet status(String senderId, String receiverId, String messageId, String status) {
+        StringBuilder out = start(senderId, receiverId);
+        out.append(STATUS_OPERATION);
+        field(out, MESSAGE_STATUS, status);
+        field(out, MESSAGE_ID, messageId);
+        out.append('}');
+
+        Envelope envelope = envelope(senderId, receiverId, OperationType.MESSAGE_STATUS, messageId);
+        Envelope.Field.MESSAGE_STATUS.set(envelope, status);
+        return Packet.of(envelope, out.toString());
+    }
+
+    /**
+     * Відкритий ключ рукостискання: {@code {"senderId","receiverId","operation":"handshake","message":"{\"publicKey\":...}","messageId":""}}.
+     *
+     * @param senderId   Унікальний ідентифікатор відправника.
+     * @param receiverId Унікальний ідентифікатор отримувача.
+     * @param publicKey  Відкритий ключ відправника.
+     * @return пакет з конвертом та його JSON-представленням
+     */
+    public static Packet handshakeKey(String senderId, String receiverId, String publicKey) {
+        String message = "{\"" + OperationType.PUBLICKEY + "\":\"" + publicKey + "\"}";
+        StringBuilder out = start(senderId, receiverId);
+        out.append(HANDSHAKE_OPERATION);
+        field(out, MESSAGE, message);
+        out.append(',').append(MESSAGE_ID).append("\"\"}");
+
+        Envelope envelope = envelope(senderId, receiverId, OperationType.HANDSHAKE, "");
+        Envelope.Field.MESSAGE.set(envelope, message);
+        return Packet.of(envelope, out.toString());
+    }
+
+    private static StringBuilder start(String senderId, String receiverId) {
+        StringBuilder out = StreamingEnvelopeCodec.buffer();
+        if (senderId != null) {
+            out.append(SENDER_ID);
+            StreamingEnvelopeCodec.quote(senderId, out);
+            out.append(',');
+        } else {
+            out.append('{');
+        }
+        if (receiverId != null) {
+            out.append(RECEIVER_ID);
+            StreamingEnvelopeCodec.quote(receiverId, out);
+            out.append(',');
+        }
+        return out;
+    }
+
+    private static void field(StringBuilder out, String key, String value) {
+        if (value != null) {
+            out.append(',').append(key);
+            StreamingEnvelopeCodec.quote(value, out);
+        }
+    }
+
+    private static Envelope envelope(String senderId, String receiverId, String operation, String messageId) {
+        Envelope envelope = new Envelope();
+        Envelope.Field.SENDER_ID.set(envelope, senderId);
+        Envelope.Field.RECEIVER_ID.set(envelope, receiverId);
+        Envelope.Field.OPERATION.set(envelope, operation);
+        Envelope.Field.MESSAGE_ID.set(envelope, messageId);
+        return envelope;
+    }
+}
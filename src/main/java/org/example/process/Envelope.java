@@ -149,6 +149,94 @@ public class Envelope {
         }
     }
 
+    /**
+     * Фіксований набір полів конверта у порядку серіалізації.
+     * Дає кодекам прямий доступ до полів за індексом замість порівняння рядків.
+     */
+    public enum Field {
+        SENDER_ID("senderId"),
+        RECEIVER_ID("receiverId"),
+        OPERATION("operation"),
+        MESSAGE("message"),
+        FILE_URL("fileUrl"),
+        FILETYPE("filetype"),
+        FILE_SIZE("fileSize"),
+        FILE_HASH("fileHash"),
+        MESSAGE_ID("messageId"),
+        MESSAGE_STATUS("messageStatus"),
+        TIMESTAMP("timestamp");
+
+        private static final Field[] VALUES = values();
+
+        private final String key;
+
+        Field(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public String get(Envelope envelope) {
+            return switch (this) {
+                case SENDER_ID -> envelope.senderId;
+                case RECEIVER_ID -> envelope.receiverId;
+                case OPERATION -> envelope.operation;
+                case MESSAGE -> envelope.message;
+                case FILE_URL -> envelope.fileUrl;
+                case FILETYPE -> envelope.filetype;
+                case FILE_SIZE -> envelope.fileSize;
+                case FILE_HASH -> envelope.fileHash;
+                case MESSAGE_ID -> envelope.messageId;
+                case MESSAGE_STATUS -> envelope.messageStatus;
+                case TIMESTAMP -> envelope.timestamp;
+            };
+        }
+
+        void set(Envelope envelope, String value) {
+            switch (this) {
+                case SENDER_ID -> envelope.senderId = value;
+                case RECEIVER_ID -> envelope.receiverId = value;
+                case OPERATION -> envelope.operation = value;
+                case MESSAGE -> envelope.message = value;
+                case FILE_URL -> envelope.fileUrl = value;
+                case FILETYPE -> envelope.filetype = value;
+                case FILE_SIZE -> envelope.fileSize = value;
+                case FILE_HASH -> envelope.fileHash = value;
+                case MESSAGE_ID -> envelope.messageId = value;
+                case MESSAGE_STATUS -> envelope.messageStatus = value;
+                case TIMESTAMP -> envelope.timestamp = value;
+            }
+        }
+
+        /**
+         * Шукає поле за ключем, записаним у фрагменті рядка, без створення нового рядка.
+         *
+         * @param source рядок, що містить ключ
+         * @param start  початок ключа (без лапок)
+         * @param end    кінець ключа (без лапок, не включно)
+         * @return поле або null, якщо ключ не належить до конверта
+         */
+        static Field lookup(String source, int start, int end) {
+            int length = end - start;
+            for (Field field : VALUES) {
+                if (field.key.length() == length && source.regionMatches(start, field.key, 0, length)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        static Field[] all() {
+            return VALUES;
+        }
+    }
+
+    // Порожній конверт для кодеків, які заповнюють поля напряму
+    Envelope() {
+    }
+
     // Конструктор для десеріалізації з JSONObject
     public Envelope(JSONObject jsonObject) {
         try {
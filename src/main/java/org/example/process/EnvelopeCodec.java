@@ -0,0 +1,25 @@
+package org.example.process;
+
+/**
+ * Кодек для перетворення {@link Envelope} у текстове представлення та назад.
+ * Дозволяє замінити реалізацію серіалізації без змін у логіці маршрутизації.
+ */
+public interface EnvelopeCodec {
+
+    /**
+     * Розбирає JSON-рядок у конверт.
+     *
+     * @param json повідомлення у форматі JSON
+     * @return конверт з заповненими полями
+     */
+    Envelope decode(String json);
+
+    /**
+     * Серіалізує вибрані поля конверта. Поля зі значенням null пропускаються.
+     *
+     * @param envelope конверт
+     * @param fields   поля, які потрібно записати; якщо не вказано — записуються всі поля
+     * @return JSON-рядок
+     */
+    String encode(Envelope envelope, Envelope.Field... fields);
+}
@@ -1,10 +1,9 @@
 package org.example.process;
 
 import org.example.LogMessage;
+import org.example.store.HandshakeKeyStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.socket.WebSocketSession;
-import java.util.Map;
 
 public class HandshakeKeyGen {
     private static final Logger logger = LoggerFactory.getLogger(HandshakeKeyGen.class);
@@ -17,46 +16,34 @@ public class HandshakeKeyGen {
 
     /**
      * Управляє процесом рукостискання між двома користувачами для обміну публічними ключами.
-     * Метод перевіряє наявність ключа у сховищі, додає його за необхідності
-     * та ініціює обмін ключами між клієнтами.
+     * Ключ відправника зберігається для пари; якщо отримувач уже надіслав свій ключ,
+     * обидві сторони отримують ключі одна одної. Повторно надісланий той самий ключ нічого не змінює.
      *
+     * @param pairKey    Ключ пари ({@link Process#pairKey}), за яким вибрано шард.
      * @param senderId   Ідентифікатор відправника.
      * @param receiverId Ідентифікатор отримувача.
      * @param publicKey  Публічний ключ відправника.
      */
-    public void handleHandshake(String senderId, String receiverId, String publicKey) {
-        // Виводимо кількість поточних пар
-        // Якщо список порожній, додаємо нову пару ключів
-        if (listener.getClientsKey().size() == 0) {
-            addKey(senderId, receiverId, publicKey);
-        } else {
-            // Перевірка за ID для визначення, чи існує вже ключ для пари користувачів
-            if (listener.getClientsKey().containsKey(senderId + ":" + receiverId)) {
-                String value = listener.getClientsKey().get(senderId + ":" + receiverId);
-
-                // Додаємо новий ключ, якщо він був змінений
-                if (!value.equals(publicKey)) {
-                    addKey(senderId, receiverId, publicKey);
-
-                    /**
-                     * Перевіряємо наявність ключа у отримувача (receiverId).
-                     * Якщо ключ є, ініціюємо обмін ключами.
-                     * Обмін ключами відбувається, коли отримувач підключився та ініціював процес.
-                     * Логіка залишається незмінною: ключі передаються обом сторонам (від A до B і від B до A),
-                     * навіть якщо у B не було змін у ключі.
-                     */
-                    returnKey(senderId, receiverId, publicKey);
-                }
-            } else {
-                // Якщо пари ключів ще немає, додаємо її
-                addKey(senderId, receiverId, publicKey);
-
-                /**
-                 * Перевіряємо, чи є ключ у отримувача (receiverId).
-                 * Якщо ключ існує, виконуємо обмін ключами.
-                 * Обмін ключами відбувається лише після підключення отримувача.
+    public void handleHandshake(String pairKey, String senderId, String receiverId, String publicKey) {
+        HandshakeKeyStore.Offer offer = listener.getHandshakeKeys().offer(pairKey, senderId, receiverId, publicKey);
+        switch (offer.status()) {
+            case UNCHANGED -> {
+                // Ключ уже збережений і, якщо отримувач надіслав свій, переданий
+            }
+            case WAITING -> {
+                logger.info(LogMessage.ADD_KAY_HANDSHAKE.getMessage(), senderId, receiverId, LogMessage.field(OperationType.PUBLICKEY, publicKey));
+                // Обмін відбудеться, коли отримувач надішле свій ключ
+                logger.info(LogMessage.RETURN_KAY_HANDSHAKE.getMessage(), senderId, receiverId);
+            }
+            case EXCHANGE -> {
+                logger.info(LogMessage.ADD_KAY_HANDSHAKE.getMessage(), senderId, receiverId, LogMessage.field(OperationType.PUBLICKEY, publicKey));
+                /*
+                 * Ключі передаються обом сторонам (від A до B і від B до A),
+                 * навіть якщо у B не було змін у ключі.
                  */
-                returnKey(senderId, receiverId, publicKey);
+                logger.info(LogMessage.HANDSHAKE_EXCHANGE.getMessage(), senderId, receiverId);
+                checkOnline(receiverId, senderId, offer.peerKey());
+                checkOnline(senderId, receiverId, publicKey);
             }
         }
     }
@@ -71,8 +58,8 @@ public class HandshakeKeyGen {
      * @param publicKey  Відкритий ключ відправника.
      */
     public void checkOnline(String senderId, String receiverId, String publicKey) {
-        // Перевіряємо, чи отримувач знаходиться в списку онлайн-користувачів
-        if (listener.getOnlineUsers().containsKey(receiverId)) {
+        // Перевіряємо, чи отримувач підключений до цього або іншого вузла кластера
+        if (listener.isOnline(receiverId)) {
             // Якщо отримувач онлайн, надсилаємо ключ
             sendKeyToUser(senderId, receiverId, publicKey);
         } else {
@@ -81,19 +68,6 @@ public class HandshakeKeyGen {
         }
     }
 
-    /**
-     * Додає нову пару користувачів до списку клієнтів із зазначеним публічним ключем.
-     *
-     * @param senderId   Ідентифікатор відправника.
-     * @param receiverId Ідентифікатор отримувача.
-     * @param publicKey  Публічний ключ відправника.
-     */
-    private void addKey(String senderId, String receiverId, String publicKey) {
-        listener.getClientsKey().put(senderId + ":" + receiverId, publicKey);
-        logger.info(LogMessage.ADD_KAY_HANDSHAKE.getMessage(), senderId, receiverId, publicKey);
-
-    }
-
     /**
      * Метод sendKeyToUser використовується для надсилання відкритого ключа іншому користувачу.
      * Якщо ключ не є null, створюється JSON-об'єкт, що містить відкритий ключ,
@@ -106,16 +80,8 @@ public class HandshakeKeyGen {
     private void sendKeyToUser(String senderId, String receiverId, String publicKey) {
         try {
             if (publicKey != null) {
-                listener.sendMessage(receiverId, new Envelope.Builder().
-                        setSenderId(senderId).
-                        setReceiverId(receiverId).
-                        setOperation("handshake").
-                        setMessage(String.format("{\"publicKey\":\"%s\"}", publicKey)).
-                        setMessageId("").
-                        build().
-                        toJson("senderId", "receiverId", "operation", "message", "messageId").
-                        toString());
-                logger.info(LogMessage.SEND_KAY_HANDSHAKE.getMessage(), senderId, receiverId, publicKey);
+                listener.sendMessage(receiverId, keyPacket(senderId, receiverId, publicKey));
+                logger.info(LogMessage.SEND_KAY_HANDSHAKE.getMessage(), senderId, receiverId, LogMessage.field(OperationType.PUBLICKEY, publicKey));
             }
         } catch (Exception e) {
             logger.error(LogMessage.ERROR_KAY_HANDSHAKE.getMessage(), senderId, receiverId, e.getMessage());
@@ -133,57 +99,31 @@ public class HandshakeKeyGen {
      */
     private void saveKeyToUser(String senderId, String receiverId, String publicKey) {
         if (publicKey != null) {
-            listener.saveMessage(receiverId,
-                    new Envelope.Builder().
-                            setSenderId(senderId).
-                            setReceiverId(receiverId).
-                            setOperation("handshake").
-                            setMessage(String.format("{\"publicKey\":\"%s\"}", publicKey)).
-                            setMessageId("").
-                            build().
-                            toJson("senderId", "receiverId", "operation", "message", "messageId").
-                            toString());
+            listener.saveMessage(receiverId, keyPacket(senderId, receiverId, publicKey));
         }
     }
 
     /**
-     * Метод returnKey використовується для обміну ключами між двома клієнтами.
-     * Він перевіряє, чи існує ключ для відповідної пари клієнтів у сховищі ключів.
-     * Якщо ключ існує, він виконує перевірку стану онлайн для обох клієнтів.
-     * У протилежному випадку логуються дані про відсутність ключа обміну.
+     * Формує повідомлення з відкритим ключем відправника.
      *
      * @param senderId   Унікальний ідентифікатор відправника.
      * @param receiverId Унікальний ідентифікатор отримувача.
      * @param publicKey  Відкритий ключ відправника.
+     * @return пакет з конвертом та його JSON-представленням
      */
-    public void returnKey(String senderId, String receiverId, String publicKey) {
-        // Перевіряємо, чи є у сховищі ключів запис для отримувача та відправника
-        if (listener.getClientsKey().containsKey(receiverId + ":" + senderId)) {
-            // Отримуємо збережений ключ
-            String value = listener.getClientsKey().get(receiverId + ":" + senderId);
-
-            // Логуємо обмін ключами
-            logger.info(LogMessage.HANDSHAKE_EXCHANGE.getMessage(), senderId, receiverId);
-
-            // Перевіряємо, чи клієнти знаходяться в онлайн-стані
-            checkOnline(receiverId, senderId, value);
-            checkOnline(senderId, receiverId, publicKey);
-        } else {
-            // Логуємо ситуацію, коли обмін ключами неможливий через відсутність запису
-            logger.info(LogMessage.RETURN_KAY_HANDSHAKE.getMessage(), senderId, receiverId);
-        }
+    private Packet keyPacket(String senderId, String receiverId, String publicKey) {
+        return ControlFrames.handshakeKey(senderId, receiverId, publicKey);
     }
 
-
     // Інтерфейс
     public interface HandshakeListener {
 
-        void sendMessage(String receiverId, String jsonMessage);
+        void sendMessage(String receiverId, Packet packet);
 
-        Map<String, WebSocketSession> getOnlineUsers();
+        boolean isOnline(String userId);
 
-        Map<String, String> getClientsKey();
+        HandshakeKeyStore getHandshakeKeys();
 
-        void saveMessage(String receiverId, String message);
+        void saveMessage(String receiverId, Packet packet);
     }
 }
\ No newline at end of file
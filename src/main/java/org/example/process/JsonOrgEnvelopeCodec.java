@@ -0,0 +1,24 @@
+package org.example.process;
+
+import org.json.JSONObject;
+
+/**
+ * Кодек на основі org.json — еталонна реалізація, сумісна з {@link Envelope#toJson(String...)}.
+ */
+public class JsonOrgEnvelopeCodec implements EnvelopeCodec {
+
+    @Override
+    public Envelope decode(String json) {
+        return new Envelope(new JSONObject(json));
+    }
+
+    @Override
+    public String encode(Envelope envelope, Envelope.Field... fields) {
+        Envelope.Field[] selected = fields.length == 0 ? Envelope.Field.all() : fields;
+        JSONObject jsonObject = new JSONObject();
+        for (Envelope.Field field : selected) {
+            jsonObject.put(field.key(), field.get(envelope));
+        }
+        return jsonObject.toString();
+    }
+}
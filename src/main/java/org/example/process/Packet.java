@@ -0,0 +1,133 @@
+package org.example.process;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Розібране повідомлення: типізований {@link Envelope} разом з оригінальним JSON-рядком.
+ * <p>
+ * Вхідний кадр розбирається один раз, після чого доставка, збереження та перевірка статусів
+ * працюють з уже готовими полями, а клієнтам пересилається оригінальний текст без повторної серіалізації.
+ * Текстове та бінарне представлення створюються лише тоді, коли вони вперше потрібні,
+ * і далі використовуються повторно для всіх отримувачів.
+ */
+public class Packet {
+    private final Envelope envelope;
+    private final EnvelopeCodec codec; // Для ледачої серіалізації пакетів, отриманих у бінарному вигляді
+    private final long createdNanos = System.nanoTime(); // Для вимірювання затримки доставки
+    private volatile String payload;
+    private volatile byte[] binary;
+    private volatile String pairKey; // Для рукостискань: ключ пари, спільний для шарду і сховища ключів
+
+    private Packet(Envelope envelope, String payload, EnvelopeCodec codec) {
+        this.envelope = envelope;
+        this.payload = payload;
+        this.codec = codec;
+    }
+
+    /**
+     * Розбирає JSON-рядок у пакет.
+     *
+     * @param payload повідомлення у форматі JSON
+     * @param codec   кодек для розбору конверта
+     * @return пакет з розібраним конвертом та оригінальним текстом
+     */
+    public static Packet parse(String payload, EnvelopeCodec codec) {
+        return new Packet(codec.decode(payload), payload, codec);
+    }
+
+    /**
+     * Розбирає бінарний конверт у пакет. JSON-представлення буде створене лише за потреби.
+     *
+     * @param buffer      буфер з бінарним конвертом
+     * @param binaryCodec бінарний кодек
+     * @param codec       кодек для отримання JSON-представлення
+     * @return пакет
+     */
+    public static Packet decode(ByteBuffer buffer, BinaryEnvelopeCodec binaryCodec, EnvelopeCodec codec) {
+        return new Packet(binaryCodec.decode(buffer), null, codec);
+    }
+
+    /**
+     * Створює пакет з уже сформованого конверта та його серіалізованого представлення.
+     *
+     * @param envelope конверт повідомлення
+     * @param payload  JSON-представлення конверта
+     * @return пакет
+     */
+    public static Packet of(Envelope envelope, String payload) {
+        return new Packet(envelope, payload, null);
+    }
+
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * @return ключ пари відправника й отримувача ({@link Process#pairKey}), обчислений один раз для пакета
+     */
+    public String pairKey() {
+        String key = pairKey;
+        if (key == null) {
+            key = Process.pairKey(envelope.getSenderId(), envelope.getReceiverId());
+            pairKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * @return JSON-представлення пакета
+     */
+    public String getPayload() {
+        String text = payload;
+        if (text == null) {
+            text = codec.encode(envelope);
+            payload = text;
+        }
+        return text;
+    }
+
+    /**
+     * @param binaryCodec бінарний кодек
+     * @return бінарне представлення пакета
+     */
+    public byte[] getBinary(BinaryEnvelopeCodec binaryCodec) {
+        byte[] bytes = binary;
+        if (bytes == null) {
+            bytes = binaryCodec.encode(envelope);
+            binary = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return ідентифікатор повідомлення або порожній рядок, якщо його немає
+     */
+    public String getMessageId() {
+        String messageId = envelope.getMessageId();
+        return messageId == null ? "" : messageId;
+    }
+
+    public String getSenderId() {
+        return envelope.getSenderId();
+    }
+
+    public String getReceiverId() {
+        return envelope.getReceiverId();
+    }
+
+    public String getOperation() {
+        return envelope.getOperation();
+    }
+
+    /**
+     * @return час створення пакета ({@link System#nanoTime()}): для вхідних кадрів — момент розбору
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    @Override
+    public String toString() {
+        return getPayload();
+    }
+}
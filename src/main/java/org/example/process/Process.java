@@ -1,15 +1,10 @@
 package org.example.process;
 
-import org.example.LogMessage;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.io.IOException;
-import java.util.Map;
-
 /**
  * Клас Process відповідає за обробку вхідних повідомлень та виконання відповідних дій.
  * Він працює з WebSocket-з'єднанням та обробляє операції, такі як повідомлення, статуси повідомлень, обмін ключами тощо.
@@ -32,21 +27,20 @@ public class Process {
      * Метод для обробки вхідних повідомлень.
      * Використовується для маршрутизації повідомлень залежно від типу операції.
      *
-     * @param session     WebSocketSession клієнта
-     * @param jsonMessage Повідомлення у форматі JSON.
+     * @param session WebSocketSession клієнта
+     * @param packet  Розібране повідомлення разом з оригінальним JSON.
      */
-    public void processMessage(WebSocketSession session, String jsonMessage) {
-        // Парсимо JSON-повідомлення
-        Envelope envelope = new Envelope(new JSONObject(jsonMessage));
+    public void processMessage(WebSocketSession session, Packet packet) {
+        Envelope envelope = packet.getEnvelope();
         String senderId = envelope.getSenderId();
         String receiverId = envelope.getReceiverId();
         String operation = envelope.getOperation();
-        String messageId = envelope.getMessageId();
+        String messageId = packet.getMessageId();
 
         switch (operation) {
             case OperationType.MESSAGE, OperationType.IMAGE, OperationType.FILE -> {
                 // Відправляємо повідомлення отримувачу
-                processMessage.sendMessage(receiverId, jsonMessage);
+                processMessage.sendMessage(receiverId, packet);
                 // Відправляємо відправнику підтвердження отримання повідомлення сервером
                 sendMessage(session, messageStatus(receiverId, senderId, messageId, "server"));
             }
@@ -54,39 +48,88 @@ public class Process {
                 // Обробляємо обмін ключами
                 JSONObject jsonObject = new JSONObject(envelope.getMessage());
                 String publicKey = jsonObject.getString(OperationType.PUBLICKEY);
-                processMessage.onHandshake(senderId, receiverId, publicKey);
+                processMessage.onHandshake(packet.pairKey(), senderId, receiverId, publicKey);
             }
             case OperationType.AVATAR, OperationType.AVATAR_ORG, OperationType.GET_AVATAR, OperationType.KEY_EXCHANGE ->
                 // Відправляємо аватари або ключі отримувачу
-                    processMessage.sendMessage(receiverId, jsonMessage);
+                    processMessage.sendMessage(receiverId, packet);
             case OperationType.MESSAGE_STATUS -> {
                 // Обробка статусів повідомлень
                 if (OperationType.DELIVERED.equals(envelope.getMessageStatus())) {
                     // Видаляємо збережені повідомлення після підтвердження доставки
                     processMessage.deleteSaveMessages(senderId, messageId);
-                    processMessage.setMessageStatus(senderId + ":" + messageId, OperationType.DELIVERED);
+                    processMessage.setMessageStatus(senderId, messageId, OperationType.DELIVERED);
                 } else if (OperationType.DELIVERED_TO_USER.equals(envelope.getMessageStatus())) {
                     // Повідомляємо відправника, що отримувач переглянув повідомлення
-                    String received_message = messageStatus(senderId, receiverId, messageId, "received");
+                    Packet received_message = messageStatus(senderId, receiverId, messageId, "received");
                     processMessage.sendMessage(receiverId, received_message);
                 }
             }
         }
     }
 
+    /**
+     * Визначає користувача, якому належить обробка повідомлення, щоб повідомлення одного користувача
+     * оброблялись послідовно: звичайні повідомлення — отримувачу, підтвердження доставки — тому,
+     * хто підтверджує (отримувачу вихідного повідомлення), рукостискання — парі користувачів.
+     *
+     * @param packet Розібране повідомлення.
+     * @return ключ власника
+     */
+    public static String ownerOf(Packet packet) {
+        Envelope envelope = packet.getEnvelope();
+        String operation = envelope.getOperation();
+        if (OperationType.HANDSHAKE.equals(operation)) {
+            return packet.pairKey();
+        }
+        if (OperationType.MESSAGE_STATUS.equals(operation) && OperationType.DELIVERED.equals(envelope.getMessageStatus())) {
+            return String.valueOf(envelope.getSenderId());
+        }
+        return String.valueOf(envelope.getReceiverId());
+    }
+
+    /**
+     * Чи підтверджує клієнт доставку цього повідомлення статусом {@code delivered}. Статуси та повідомлення
+     * без messageId (ключі рукостискання) не підтверджуються: записане в сесію вважається доставленим.
+     *
+     * @param packet Розібране повідомлення.
+     * @return true, якщо повідомлення треба зберігати до підтвердження
+     */
+    public static boolean expectsAck(Packet packet) {
+        return !packet.getMessageId().isEmpty() && !OperationType.MESSAGE_STATUS.equals(packet.getOperation());
+    }
+
+    /**
+     * Ключ пари користувачів, однаковий незалежно від того, хто з них відправник. Ідентифікатори впорядковані,
+     * а перед меншим записана його довжина, тож різні пари не дають однакового ключа навіть з {@code :} в ідентифікаторах.
+     * Тим самим ключем рукостискання вибирає шард, вузол кластера і запис у {@link org.example.store.HandshakeKeyStore}.
+     *
+     * @return ключ пари користувачів
+     */
+    public static String pairKey(String firstId, String secondId) {
+        String first = String.valueOf(firstId);
+        String second = String.valueOf(secondId);
+        return isFirstOfPair(first, second)
+                ? first.length() + ":" + first + ":" + second
+                : second.length() + ":" + second + ":" + first;
+    }
+
+    /**
+     * @return true, якщо в ключі пари ({@link #pairKey}) {@code id} стоїть першим
+     */
+    public static boolean isFirstOfPair(String id, String otherId) {
+        return String.valueOf(id).compareTo(String.valueOf(otherId)) < 0;
+    }
+
     /**
      * Відправка повідомлення клієнту через WebSocket.
      *
      * @param session WebSocketSession клієнта.
-     * @param message Повідомлення у форматі JSON.
+     * @param message Повідомлення для відправки.
      */
-    private void sendMessage(WebSocketSession session, String message) {
+    private void sendMessage(WebSocketSession session, Packet message) {
         if (session != null && session.isOpen()) {
-            try {
-                session.sendMessage(new TextMessage(message));
-            } catch (IOException e) {
-                logger.error(LogMessage.ERROR_SENDING_MESSAGE.getMessage(), e.getMessage());
-            }
+            processMessage.sendToSession(session, message);
         } else {
             logger.error("Attempting to send a message, but the session is closed or does not exist.");
         }
@@ -99,18 +142,10 @@ public class Process {
      * @param receiverId Ідентифікатор отримувача.
      * @param messageId  Ідентифікатор повідомлення.
      * @param status     Статус повідомлення.
-     * @return JSON-рядок із сформованим статусом.
+     * @return Пакет із сформованим статусом.
      */
-    private String messageStatus(String senderId, String receiverId, String messageId, String status) {
-        return new Envelope.Builder().
-                setSenderId(senderId).
-                setReceiverId(receiverId).
-                setOperation("messageStatus").
-                setMessageStatus(status).
-                setMessageId(messageId).
-                build().
-                toJson("senderId", "receiverId", "operation", "messageStatus", "messageId").
-                toString();
+    private Packet messageStatus(String senderId, String receiverId, String messageId, String status) {
+        return ControlFrames.status(senderId, receiverId, messageId, status);
     }
 
     /**
@@ -118,12 +153,17 @@ public class Process {
      */
     public interface ProcessMessage {
 
-        void sendMessage(String receiverId, String jsonMessage);
+        void sendMessage(String receiverId, Packet packet);
+
+        void sendToSession(WebSocketSession session, Packet packet);
 
-        void setMessageStatus(String messageId, String messageStatus);
+        void setMessageStatus(String userId, String messageId, String messageStatus);
 
         void deleteSaveMessages(String userId, String messageId);
 
-        void onHandshake(String senderId, String receiverId, String publicKey);
+        /**
+         * @param pairKey ключ пари ({@link #pairKey}), обчислений один раз для вибору шарду
+         */
+        void onHandshake(String pairKey, String senderId, String receiverId, String publicKey);
     }
 }
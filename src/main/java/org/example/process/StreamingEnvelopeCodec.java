@@ -0,0 +1,412 @@
+package org.example.process;
+
+import org.json.JSONException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Потоковий кодек для фіксованої схеми {@link Envelope}.
+ * <p>
+ * Читання проходить рядок один раз і записує значення одразу в поля конверта,
+ * без проміжного JSONObject та його HashMap. Запис використовує буфер, який
+ * повторно використовується в межах потоку. Екранування рядків повторює org.json,
+ * тож результат відрізняється від {@link JsonOrgEnvelopeCodec} лише порядком ключів.
+ * <p>
+ * Сам читач приймає лише строгий JSON і лише ті значення полів конверта, для яких
+ * {@code optString} дає вихідний текст: рядки, {@code null}, {@code true}, {@code false}
+ * і цілі числа без ведучих нулів. Усе інше (ключі без лапок, коментарі, {@code 1e2}, {@code 1.50},
+ * вкладені об'єкти й масиви у полях конверта, повторені ключі) передається до
+ * {@link JsonOrgEnvelopeCodec}, тож результат розбору, включно з помилками, збігається з org.json.
+ */
+public class StreamingEnvelopeCodec implements EnvelopeCodec {
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final EnvelopeCodec fallback = new JsonOrgEnvelopeCodec();
+
+    @Override
+    public Envelope decode(String json) {
+        try {
+            return new Reader(json).readEnvelope();
+        } catch (JSONException e) {
+            return fallback.decode(json);
+        }
+    }
+
+    @Override
+    public String encode(Envelope envelope, Envelope.Field... fields) {
+        Envelope.Field[] selected = fields.length == 0 ? Envelope.Field.all() : fields;
+        StringBuilder out = buffer();
+        out.append('{');
+        boolean first = true;
+        for (Envelope.Field field : selected) {
+            String value = field.get(envelope);
+            if (value == null) {
+                continue;
+            }
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append('"').append(field.key()).append("\":");
+            quote(value, out);
+        }
+        out.append('}');
+        return out.toString();
+    }
+
+    /**
+     * @return порожній буфер поточного потоку
+     */
+    static StringBuilder buffer() {
+        StringBuilder out = BUFFER.get();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            // Не тримаємо в потоці буфер, що виріс через одне велике повідомлення
+            out = new StringBuilder(256);
+            BUFFER.set(out);
+        }
+        out.setLength(0);
+        return out;
+    }
+
+    /**
+     * Записує рядок у лапках з тими самими правилами екранування, що й JSONObject.quote.
+     *
+     * @param value рядок
+     * @param out   буфер для запису
+     */
+    static void quote(String value, StringBuilder out) {
+        out.append('"');
+        char previous = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\', '"' -> out.append('\\').append(c);
+                case '/' -> {
+                    if (previous == '<') {
+                        out.append('\\');
+                    }
+                    out.append(c);
+                }
+                case '\b' -> out.append("\\b");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\f' -> out.append("\\f");
+                case '\r' -> out.append("\\r");
+                default -> {
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                        out.append("\\u")
+                                .append(HEX[(c >> 12) & 0xF])
+                                .append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF])
+                                .append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+            previous = c;
+        }
+        out.append('"');
+    }
+
+    /**
+     * Однопрохідний читач JSON-об'єкта конверта.
+     */
+    private static final class Reader {
+        private final String source;
+        private int position;
+        private boolean escaped; // чи містив останній прочитаний рядок escape-послідовності
+        private int seenFields; // бітова маска полів конверта, що вже зустрілися
+        private Set<String> seenKeys; // інші ключі об'єкта конверта, створюється лише за потреби
+
+        private Reader(String source) {
+            this.source = source;
+        }
+
+        private Envelope readEnvelope() {
+            Envelope envelope = new Envelope();
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return finish(envelope);
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = position;
+                int keyEnd = skipString();
+                String escapedKey = escaped ? unescape(keyStart, keyEnd) : null;
+                Envelope.Field field = escapedKey != null
+                        ? Envelope.Field.lookup(escapedKey, 0, escapedKey.length())
+                        : Envelope.Field.lookup(source, keyStart, keyEnd);
+                markSeen(field, escapedKey, keyStart, keyEnd);
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (field != null) {
+                    field.set(envelope, readValue());
+                } else {
+                    skipValue();
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return finish(envelope);
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private Envelope finish(Envelope envelope) {
+            skipWhitespace();
+            if (position != source.length()) {
+                throw error("Unexpected trailing content");
+            }
+            return envelope;
+        }
+
+        /**
+         * Повторений ключ org.json відхиляє з помилкою "Duplicate key"; читач передає такий рядок до нього.
+         */
+        private void markSeen(Envelope.Field field, String escapedKey, int keyStart, int keyEnd) {
+            if (field != null) {
+                int bit = 1 << field.ordinal();
+                if ((seenFields & bit) != 0) {
+                    throw error("Duplicate key");
+                }
+                seenFields |= bit;
+                return;
+            }
+            if (seenKeys == null) {
+                seenKeys = new HashSet<>();
+            }
+            if (!seenKeys.add(escapedKey != null ? escapedKey : source.substring(keyStart, keyEnd))) {
+                throw error("Duplicate key");
+            }
+        }
+
+        /**
+         * Читає значення у вигляді, який повернув би JSONObject.optString(key, null).
+         * Значення, які org.json перетворює (числа з експонентою чи дробом, вкладені об'єкти й масиви,
+         * літерали в іншому регістрі), не читаються тут, а передаються до org.json.
+         */
+        private String readValue() {
+            char c = peek();
+            if (c == '"') {
+                position++;
+                int start = position;
+                int end = skipString();
+                return escaped
+                        ? unescape(start, end)
+                        : source.substring(start, end);
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested value in envelope field");
+            }
+            int start = position;
+            skipLiteral();
+            if (source.startsWith("null", start) && position - start == 4) {
+                return null;
+            }
+            String literal = source.substring(start, position);
+            if ("true".equals(literal) || "false".equals(literal) || isCanonicalInteger(literal)) {
+                return literal;
+            }
+            throw error("Literal is not preserved by org.json");
+        }
+
+        /**
+         * @return true, якщо org.json розбере літерал як ціле число і toString поверне той самий текст
+         */
+        private static boolean isCanonicalInteger(String literal) {
+            int i = literal.charAt(0) == '-' ? 1 : 0;
+            int length = literal.length();
+            if (i == length || (literal.charAt(i) == '0' && (length - i > 1 || i == 1))) {
+                return false; // "-", "-0", ведучі нулі
+            }
+            for (; i < length; i++) {
+                char c = literal.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void skipValue() {
+            char c = peek();
+            switch (c) {
+                case '"' -> {
+                    position++;
+                    skipString();
+                }
+                case '{' -> skipObject();
+                case '[' -> skipArray();
+                default -> skipLiteral();
+            }
+        }
+
+        /**
+         * Пропускає вкладений об'єкт з перевіркою вмісту (позиція — на відкриваючій дужці).
+         */
+        private void skipObject() {
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                skipString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                skipValue();
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        /**
+         * Пропускає вкладений масив з перевіркою вмісту (позиція — на відкриваючій дужці).
+         */
+        private void skipArray() {
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return;
+            }
+            while (true) {
+                skipWhitespace();
+                skipValue();
+                skipWhitespace();
+                char c = next();
+                if (c == ']') {
+                    return;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        /**
+         * Пропускає значення без лапок до роздільника, на якому зупинився б JSONTokener.nextValue.
+         */
+        private void skipLiteral() {
+            int start = position;
+            while (position < source.length()) {
+                char ch = source.charAt(position);
+                if (ch <= ' ' || ",:]}/\\\"[{;=#".indexOf(ch) >= 0) {
+                    break;
+                }
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a value");
+            }
+        }
+
+        /**
+         * Пропускає рядок (позиція — одразу після відкриваючої лапки).
+         *
+         * @return позиція закриваючої лапки
+         */
+        private int skipString() {
+            escaped = false;
+            while (position < source.length()) {
+                char c = source.charAt(position++);
+                if (c == '\\') {
+                    escaped = true;
+                    position++;
+                } else if (c == '"') {
+                    return position - 1;
+                } else if (c < ' ') {
+                    throw error("Unescaped control character in string");
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private String unescape(int start, int end) {
+            StringBuilder out = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escape = source.charAt(++i);
+                switch (escape) {
+                    case 'b' -> out.append('\b');
+                    case 't' -> out.append('\t');
+                    case 'n' -> out.append('\n');
+                    case 'f' -> out.append('\f');
+                    case 'r' -> out.append('\r');
+                    case 'u' -> {
+                        if (i + 4 >= end) {
+                            throw error("Illegal unicode escape");
+                        }
+                        try {
+                            out.append((char) Integer.parseInt(source, i + 1, i + 5, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Illegal unicode escape");
+                        }
+                        i += 4;
+                    }
+                    case '"', '\\', '/' -> out.append(escape);
+                    default -> throw error("Illegal escape");
+                }
+            }
+            return out.toString();
+        }
+
+        private void skipWhitespace() {
+            // Як JSONTokener.nextClean: пробілом вважається будь-який символ до ' ' включно
+            while (position < source.length() && source.charAt(position) <= ' ') {
+                position++;
+            }
+        }
+
+        private char peek() {
+            if (position >= source.length()) {
+                throw error("Unexpected end of input");
+            }
+            return source.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private JSONException error(String message) {
+            return new JSONException(message + " at " + position);
+        }
+    }
+}
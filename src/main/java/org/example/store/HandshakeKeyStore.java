@@ -0,0 +1,115 @@
+package org.example.store;
+
+import org.example.process.Process;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Відкриті ключі рукостискання пар користувачів.
+ * <p>
+ * Обидва ключі пари лежать в одному записі під ключем пари ({@link Process#pairKey}), тож неважливо,
+ * хто з користувачів надіслав ключ першим. Ключ пари обчислюється один раз для рукостискання і ним же
+ * вибирається шард, тож пошук у сховищі нового ключа не створює. Запис замінюється атомарно (порівняння
+ * і заміна без блокувань), тому з двох одночасних рукостискань сторін рівно одне бачить ключі обох
+ * і ініціює обмін: кожна сторона отримує ключ іншої один раз. Повторно надісланий той самий ключ обміну не викликає.
+ */
+public class HandshakeKeyStore {
+
+    private final Map<String, Keys> pairs = new ConcurrentHashMap<>();
+
+    /**
+     * Зберігає ключ відправника для пари.
+     *
+     * @param senderId   ідентифікатор відправника
+     * @param receiverId ідентифікатор отримувача
+     * @param publicKey  відкритий ключ відправника
+     * @return результат: ключ не змінився, збережений і чекає на ключ отримувача, або обом сторонам треба обмінятися ключами
+     */
+    public Offer offer(String senderId, String receiverId, String publicKey) {
+        return offer(Process.pairKey(senderId, receiverId), senderId, receiverId, publicKey);
+    }
+
+    /**
+     * Зберігає ключ відправника для пари, ключ якої вже обчислено.
+     *
+     * @param pairKey    ключ пари, {@code Process.pairKey(senderId, receiverId)}
+     * @param senderId   ідентифікатор відправника
+     * @param receiverId ідентифікатор отримувача
+     * @param publicKey  відкритий ключ відправника
+     * @return результат: ключ не змінився, збережений і чекає на ключ отримувача, або обом сторонам треба обмінятися ключами
+     */
+    public Offer offer(String pairKey, String senderId, String receiverId, String publicKey) {
+        Objects.requireNonNull(publicKey, "publicKey");
+        boolean senderFirst = Process.isFirstOfPair(senderId, receiverId);
+        while (true) {
+            Keys current = pairs.get(pairKey);
+            Keys next = (current == null ? Keys.EMPTY : current).with(senderFirst, publicKey);
+            if (next == current) {
+                return Offer.UNCHANGED;
+            }
+            boolean stored = current == null ? pairs.putIfAbsent(pairKey, next) == null : pairs.replace(pairKey, current, next);
+            if (stored) {
+                String peerKey = next.of(!senderFirst);
+                return peerKey == null ? Offer.WAITING : new Offer(Offer.Status.EXCHANGE, peerKey);
+            }
+            // Інша сторона змінила запис паралельно — повторюємо з новим станом
+        }
+    }
+
+    /**
+     * @param ownerId ідентифікатор власника ключа
+     * @param peerId  ідентифікатор другого користувача пари
+     * @return ключ, який {@code ownerId} надіслав для пари, або null
+     */
+    public String get(String ownerId, String peerId) {
+        Keys keys = pairs.get(Process.pairKey(ownerId, peerId));
+        return keys == null ? null : keys.of(Process.isFirstOfPair(ownerId, peerId));
+    }
+
+    /**
+     * @return кількість пар, для яких збережено хоча б один ключ
+     */
+    public int size() {
+        return pairs.size();
+    }
+
+    /**
+     * Результат збереження ключа.
+     *
+     * @param status  що відбулося
+     * @param peerKey ключ отримувача, якщо {@code status} — {@link Status#EXCHANGE}
+     */
+    public record Offer(Status status, String peerKey) {
+        static final Offer UNCHANGED = new Offer(Status.UNCHANGED, null);
+        static final Offer WAITING = new Offer(Status.WAITING, null);
+
+        public enum Status {
+            UNCHANGED, // відправник повторив той самий ключ
+            WAITING,   // отримувач ще не надіслав свій ключ
+            EXCHANGE   // ключі обох сторін є — їх треба передати
+        }
+    }
+
+    /**
+     * Ключі пари: {@code first} — того, хто стоїть першим у ключі пари, {@code second} — другого.
+     */
+    private record Keys(String first, String second) {
+        private static final Keys EMPTY = new Keys(null, null);
+
+        private String of(boolean firstSide) {
+            return firstSide ? first : second;
+        }
+
+        /**
+         * @return той самий запис, якщо ключ сторони не змінився
+         */
+        private Keys with(boolean firstSide, String key) {
+            if (key.equals(of(firstSide))) {
+                return this;
+            }
+            return firstSide ? new Keys(key, second) : new Keys(first, key);
+        }
+    }
+}
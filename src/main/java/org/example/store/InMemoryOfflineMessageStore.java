@@ -0,0 +1,67 @@
+package org.example.store;
+
+import org.example.process.Packet;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Офлайн-сховище в пам'яті процесу. Повідомлення втрачаються при перезапуску.
+ * <p>
+ * Для кожного отримувача тримається окрема {@link RecipientQueue}, тож збереження, відправка
+ * та підтвердження з різних потоків коректні і блокують лише чергу одного отримувача.
+ */
+public class InMemoryOfflineMessageStore implements OfflineMessageStore {
+
+    private final Map<String, RecipientQueue> saveMessages = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean append(String receiverId, Packet packet) {
+        String key = RecipientQueue.keyOf(packet);
+        RecipientQueue.Put result;
+        // Черга могла бути списана паралельним видаленням останнього повідомлення — тоді беремо нову
+        while ((result = saveMessages.computeIfAbsent(receiverId, k -> new RecipientQueue()).put(key, packet)) == RecipientQueue.Put.RETIRED) {
+            Thread.onSpinWait();
+        }
+        return result == RecipientQueue.Put.STORED;
+    }
+
+    @Override
+    public List<Packet> messages(String receiverId) {
+        RecipientQueue queue = saveMessages.get(receiverId);
+        return queue == null ? List.of() : queue.snapshot();
+    }
+
+    @Override
+    public List<Packet> page(String receiverId, Predicate<String> skip, int limit) {
+        RecipientQueue queue = saveMessages.get(receiverId);
+        return queue == null ? List.of() : queue.page(skip, limit);
+    }
+
+    @Override
+    public Map<String, Integer> backlogSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        saveMessages.forEach((receiverId, queue) -> {
+            int size = queue.size();
+            if (size > 0) {
+                sizes.put(receiverId, size);
+            }
+        });
+        return sizes;
+    }
+
+    @Override
+    public boolean remove(String receiverId, String messageId) {
+        RecipientQueue queue = saveMessages.get(receiverId);
+        if (queue == null || queue.remove(messageId) == null) {
+            return false;
+        }
+        if (queue.retireIfEmpty()) {
+            saveMessages.remove(receiverId, queue);
+        }
+        return true;
+    }
+}
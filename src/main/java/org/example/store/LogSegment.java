@@ -0,0 +1,227 @@
+package org.example.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Один файл журналу офлайн-повідомлень, відображений у пам'ять.
+ * <p>
+ * Формат запису: {@code [int довжина тіла][int CRC32 тіла][тіло]}, де тіло —
+ * {@code [byte тип][long порядковий номер][short довжина][receiverId][short довжина][ключ повідомлення (messageId)][payload до кінця тіла]}.
+ * Порядковий номер зберігається при компакції, тож після відновлення порядок повідомлень не змінюється.
+ * Файл створюється заповненим нулями, тож нульова довжина означає кінець записаних даних.
+ * Доступ до сегмента синхронізується власником ({@link SegmentLogOfflineMessageStore}), крім {@link #force},
+ * який виконується поза блокуванням власника і синхронізується з закриттям і видаленням на самому сегменті.
+ */
+final class LogSegment {
+
+    static final byte APPEND = 1;
+    static final byte ACK = 2;
+
+    private static final int HEADER = 8;
+
+    final long id;
+    final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private volatile boolean dirty;
+    private boolean closed;
+
+    int appended; // Кількість записів APPEND у сегменті
+    int live;     // Скільки з них ще не підтверджені
+    private final Set<Long> cancelled = new HashSet<>(); // Старіші сегменти, записи яких скасовують записи цього
+    private final Set<LogSegment> cancelledBy = new HashSet<>(); // Новіші сегменти, чиї записи скасовують записи цього
+
+    private LogSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path directory, long id, int size) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    static LogSegment open(Path path, long id) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+
+    static String fileName(long id) {
+        return String.format("segment-%020d.log", id);
+    }
+
+    static int recordSize(byte[] receiverId, byte[] messageId, byte[] payload) {
+        return HEADER + 1 + 8 + 2 + receiverId.length + 2 + messageId.length + (payload == null ? 0 : payload.length);
+    }
+
+    boolean hasRoom(int recordSize) {
+        return writePosition + recordSize <= buffer.capacity();
+    }
+
+    /**
+     * Дописує запис у кінець сегмента.
+     *
+     * @return позиція початку запису
+     */
+    int append(byte type, long sequence, byte[] receiverId, byte[] messageId, byte[] payload) {
+        int position = writePosition;
+        int bodyLength = recordSize(receiverId, messageId, payload) - HEADER;
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(position + HEADER);
+        body.put(type);
+        body.putLong(sequence);
+        body.putShort((short) receiverId.length).put(receiverId);
+        body.putShort((short) messageId.length).put(messageId);
+        if (payload != null) {
+            body.put(payload);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + HEADER, bodyLength));
+        // Довжина пишеться останньою: до цього моменту запис не вважається існуючим
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, bodyLength);
+
+        writePosition = position + HEADER + bodyLength;
+        dirty = true;
+        return position;
+    }
+
+    /**
+     * Читає payload запису APPEND.
+     */
+    String readPayload(int position) {
+        Record record = read(position);
+        return record == null ? null : record.payload;
+    }
+
+    /**
+     * Читає запис за позицією.
+     *
+     * @return запис або null, якщо за позицією немає цілого запису (кінець даних або обірваний запис)
+     */
+    Record read(int position) {
+        if (position + HEADER > buffer.capacity()) {
+            return null;
+        }
+        int bodyLength = buffer.getInt(position);
+        if (bodyLength <= 0 || position + HEADER + bodyLength > buffer.capacity()) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(position + HEADER, bodyLength);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+            return null;
+        }
+
+        byte type = body.get();
+        long sequence = body.getLong();
+        String receiverId = readString(body, body.getShort() & 0xFFFF);
+        String messageId = readString(body, body.getShort() & 0xFFFF);
+        String payload = body.hasRemaining() ? readString(body, body.remaining()) : null;
+        return new Record(type, sequence, receiverId, messageId, payload, position, HEADER + bodyLength);
+    }
+
+    /**
+     * Після відкриття існуючого файлу встановлює позицію запису за останнім цілим записом.
+     * Залишки обірваного запису затираються, щоб при наступному відновленні
+     * їх не було прийнято за записи, що йдуть після нових.
+     */
+    void recoverWritePosition(int position) {
+        writePosition = position;
+        if (position + HEADER <= buffer.capacity() && buffer.getLong(position) != 0) {
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Запам'ятовує, що запис цього сегмента (ACK або повторний APPEND) скасовує запис сегмента {@code older}.
+     */
+    void cancel(LogSegment older) {
+        if (older != this && cancelled.add(older.id)) {
+            older.cancelledBy.add(this);
+        }
+    }
+
+    /**
+     * Сегмент {@code deleted} видалено — скасовувати в ньому більше нічого.
+     */
+    void forget(LogSegment deleted) {
+        cancelled.remove(deleted.id);
+    }
+
+    /**
+     * @return true, якщо видалення сегмента відновило б при читанні журналу записи старіших сегментів
+     */
+    boolean cancelsOthers() {
+        return !cancelled.isEmpty();
+    }
+
+    /**
+     * @return новіші сегменти, які скасовують записи цього і мають {@link #forget} його після видалення
+     */
+    Set<LogSegment> cancelledBy() {
+        return cancelledBy;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    /**
+     * Скидає сегмент на диск, якщо в нього писали після попереднього скидання. Закритий сегмент пропускається.
+     * Якщо скинути не вдалось, сегмент лишається позначеним як змінений і буде скинутий наступного разу.
+     */
+    synchronized void force() {
+        if (closed || !dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            buffer.force();
+        } catch (RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    synchronized void close() throws IOException {
+        force();
+        closed = true;
+        channel.close();
+    }
+
+    synchronized void delete() throws IOException {
+        closed = true;
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    private static String readString(ByteBuffer body, int length) {
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    record Record(byte type, long sequence, String receiverId, String messageId, String payload, int position, int size) {
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.store;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Таблиця статусів доставки повідомлень з обмеженням за часом життя та кількістю записів.
+ * <p>
+ * Записи зберігаються в порядку додавання, тож найстаріші записи — водночас і ті, що закінчуються першими.
+ * Очищення виконується під час додавання: поки найстаріший запис прострочений або таблиця переповнена,
+ * він видаляється. Очищення виконує лише один потік за раз, інші його пропускають.
+ */
+public class MessageStatusTable {
+
+    private final Map<StatusKey, Entry> statuses = new ConcurrentHashMap<>();
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public MessageStatusTable(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Записує статус повідомлення, якщо для нього ще немає статусу.
+     *
+     * @param userId    ідентифікатор користувача
+     * @param messageId ідентифікатор повідомлення
+     * @param status    статус
+     */
+    public void put(String userId, String messageId, String status) {
+        long now = System.currentTimeMillis();
+        StatusKey key = new StatusKey(userId, messageId);
+        Entry entry = new Entry(key, status, now + ttlMillis);
+        Entry current = statuses.putIfAbsent(key, entry);
+        if (current != null && current.expiresAt <= now && statuses.replace(key, current, entry)) {
+            current = null;
+        }
+        if (current == null) {
+            order.offer(entry);
+        }
+        trim(now);
+    }
+
+    /**
+     * @param userId    ідентифікатор користувача
+     * @param messageId ідентифікатор повідомлення
+     * @return статус або null, якщо статусу немає або він застарів
+     */
+    public String get(String userId, String messageId) {
+        Entry entry = statuses.get(new StatusKey(userId, messageId));
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.status;
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    /**
+     * @return кількість записів, видалених після закінчення часу життя
+     */
+    public long expiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return кількість записів, витіснених через переповнення таблиці
+     */
+    public long evictedCount() {
+        return evicted.get();
+    }
+
+    private void trim(long now) {
+        if (!trimLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry head;
+            while ((head = order.peek()) != null) {
+                boolean overflow = statuses.size() > maxEntries;
+                boolean stale = head.expiresAt <= now;
+                if (!overflow && !stale) {
+                    return;
+                }
+                order.poll();
+                // Запис міг бути вже замінений новішим для того ж ключа — тоді рахувати нічого
+                if (statuses.remove(head.key, head)) {
+                    (stale ? expired : evicted).incrementAndGet();
+                }
+            }
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    /**
+     * Ключ статусу: пара користувач/повідомлення без склеювання рядків.
+     */
+    private record StatusKey(String userId, String messageId) {
+    }
+
+    private record Entry(StatusKey key, String status, long expiresAt) {
+    }
+}
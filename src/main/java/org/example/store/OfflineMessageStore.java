@@ -0,0 +1,74 @@
+package org.example.store;
+
+import org.example.process.Packet;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Сховище офлайн-повідомлень: повідомлення, які ще не підтверджені отримувачем.
+ */
+public interface OfflineMessageStore extends AutoCloseable {
+
+    /**
+     * Зберігає повідомлення для отримувача. Повідомлення ідентифікується парою отримувач/{@link #keyOf ключ}:
+     * повторне збереження того самого повідомлення нічого не змінює, а нове повідомлення з тим самим ключем
+     * замінює попереднє на його місці в черзі.
+     *
+     * @param receiverId ідентифікатор отримувача
+     * @param packet     повідомлення
+     * @return false, якщо таке саме повідомлення вже збережене
+     */
+    boolean append(String receiverId, Packet packet);
+
+    /**
+     * Повертає знімок збережених повідомлень отримувача у порядку збереження.
+     *
+     * @param receiverId ідентифікатор отримувача
+     * @return список повідомлень (порожній, якщо повідомлень немає)
+     */
+    List<Packet> messages(String receiverId);
+
+    /**
+     * Повертає сторінку збережених повідомлень отримувача з початку черги (у порядку збереження),
+     * пропускаючи повідомлення, ключі яких ({@link #keyOf}) відхиляє фільтр — наприклад, уже відправлені.
+     * Читаються лише повідомлення, що потрапили на сторінку.
+     *
+     * @param receiverId ідентифікатор отримувача
+     * @param skip       ключі повідомлень, які потрібно пропустити
+     * @param limit      максимальна кількість повідомлень
+     * @return список повідомлень (порожній, якщо повідомлень немає)
+     */
+    List<Packet> page(String receiverId, Predicate<String> skip, int limit);
+
+    /**
+     * Видаляє збережене повідомлення після підтвердження доставки.
+     *
+     * @param receiverId ідентифікатор отримувача
+     * @param messageId  ідентифікатор повідомлення
+     * @return true, якщо щось було видалено
+     */
+    boolean remove(String receiverId, String messageId);
+
+    /**
+     * Кількість збережених повідомлень кожного отримувача (для метрик). Обходить весь індекс сховища.
+     *
+     * @return ідентифікатор отримувача -> кількість повідомлень
+     */
+    Map<String, Integer> backlogSizes();
+
+    /**
+     * Ключ, за яким сховище ідентифікує повідомлення (і який треба передати в {@link #remove}).
+     *
+     * @param packet повідомлення
+     * @return messageId; для статусів — операція та messageId; для ключів рукостискання — операція та відправник; для інших повідомлень без messageId — ще й дайджест вмісту
+     */
+    static String keyOf(Packet packet) {
+        return RecipientQueue.keyOf(packet);
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.store;
+
+import org.example.process.OperationType;
+import org.example.process.Packet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Черга офлайн-повідомлень одного отримувача з доступом за ключем повідомлення.
+ * <p>
+ * Зберігає порядок додавання, видаляє за O(1) і синхронізується лише на собі,
+ * тож операції над різними отримувачами не блокують одна одну.
+ * Порожня черга «списується» ({@link #retireIfEmpty()}) і більше не приймає повідомлень —
+ * власник має створити нову, щоб повідомлення не потрапило в чергу, яку вже прибрали з мапи.
+ */
+final class RecipientQueue {
+
+    private final LinkedHashMap<String, Packet> messages = new LinkedHashMap<>();
+    private boolean retired;
+
+    /**
+     * Ключ повідомлення в черзі. Відкриті ключі рукостискання (без messageId) ключуються операцією
+     * та відправником, тож новіший ключ від того ж відправника замінює попередній. Інші повідомлення
+     * без messageId ключуються дайджестом вмісту: кожне зберігається окремо, а повторне збереження
+     * того самого кадру дає той самий ключ. Статуси ключуються операцією та messageId: вони не збігаються
+     * з самими повідомленнями, а новіший статус того ж повідомлення замінює попередній.
+     *
+     * @param packet повідомлення
+     * @return ключ повідомлення
+     */
+    static String keyOf(Packet packet) {
+        String messageId = packet.getMessageId();
+        if (messageId.isEmpty()) {
+            return OperationType.HANDSHAKE.equals(packet.getOperation())
+                    ? packet.getOperation() + ":" + packet.getSenderId()
+                    : packet.getOperation() + ":" + packet.getSenderId() + ":" + digest(packet.getPayload());
+        }
+        return OperationType.MESSAGE_STATUS.equals(packet.getOperation()) ? packet.getOperation() + ":" + messageId : messageId;
+    }
+
+    private static String digest(String payload) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Додає повідомлення або замінює повідомлення з тим самим ключем, зберігаючи його місце в черзі.
+     * Таке саме повідомлення, що вже є в черзі, не замінюється.
+     *
+     * @return результат додавання
+     */
+    synchronized Put put(String key, Packet packet) {
+        if (retired) {
+            return Put.RETIRED;
+        }
+        Packet previous = messages.put(key, packet);
+        if (previous != null && previous.getPayload().equals(packet.getPayload())) {
+            messages.put(key, previous);
+            return Put.UNCHANGED;
+        }
+        return Put.STORED;
+    }
+
+    synchronized Packet remove(String key) {
+        return messages.remove(key);
+    }
+
+    /**
+     * Списує чергу, якщо вона порожня.
+     *
+     * @return true, якщо черга списана
+     */
+    synchronized boolean retireIfEmpty() {
+        if (messages.isEmpty()) {
+            retired = true;
+        }
+        return retired;
+    }
+
+    synchronized List<Packet> snapshot() {
+        return new ArrayList<>(messages.values());
+    }
+
+    synchronized List<Packet> page(Predicate<String> skip, int limit) {
+        List<Packet> page = new ArrayList<>(Math.min(limit, messages.size()));
+        for (Map.Entry<String, Packet> entry : messages.entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (!skip.test(entry.getKey())) {
+                page.add(entry.getValue());
+            }
+        }
+        return page;
+    }
+
+    synchronized int size() {
+        return messages.size();
+    }
+
+    /**
+     * Результат {@link #put}.
+     */
+    enum Put {
+        STORED,
+        UNCHANGED,
+        RETIRED
+    }
+}
@@ -0,0 +1,418 @@
+package org.example.store;
+
+import org.example.process.EnvelopeCodec;
+import org.example.process.Packet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Офлайн-сховище на основі журналу з дописуванням (write-ahead log) на локальному диску.
+ * <p>
+ * Журнал складається з сегментів фіксованого розміру, відображених у пам'ять. Збереження повідомлення
+ * дописує запис APPEND, підтвердження доставки — запис ACK. У пам'яті тримається лише індекс
+ * (отримувач → ключ повідомлення → позиція запису, у порядку збереження), тож підтвердження
+ * знаходить запис за O(1), а самі повідомлення читаються з сегментів при відправці.
+ * <p>
+ * Записи потрапляють у page cache одразу, тож падіння процесу їх не втрачає. На диск сегменти
+ * скидаються груповим fsync раз на {@code flushIntervalMillis}, тож при втраті живлення можна
+ * втратити не більше останнього інтервалу.
+ * <p>
+ * Для кожного сегмента рахуються живі (непідтверджені й не замінені) записи, і будь-який
+ * закритий сегмент без живих записів видаляється одразу при підтвердженні. Такі сегменти відмічаються
+ * в момент, коли звільняються, тож підтвердження не обходить усі сегменти. Виняток — сегмент,
+ * чиї записи ACK або повторні APPEND скасовують записи ще існуючого старішого сегмента:
+ * його видалення «воскресило» б ті повідомлення при відновленні, тож він чекає, поки видалять старіший.
+ * <p>
+ * Компакція виконується у фоновому потоці, а не при підтвердженні: живі записи сегментів,
+ * у яких їх лишилась невелика частка, переписуються в кінець журналу, і сегменти видаляються.
+ */
+public class SegmentLogOfflineMessageStore implements OfflineMessageStore {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogOfflineMessageStore.class);
+
+    // Частка живих записів, нижче якої найстаріший сегмент переписується і видаляється
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+    private static final long COMPACTION_INTERVAL_MILLIS = 1000;
+    // Сегмент відображається в пам'ять одним MappedByteBuffer, тож його розмір обмежений int
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    private static final byte[] NO_PAYLOAD = null;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final EnvelopeCodec codec;
+
+    private final Deque<LogSegment> segments = new ArrayDeque<>();
+    private final Set<LogSegment> reclaimable = new LinkedHashSet<>(); // Закриті сегменти без живих записів і скасувань
+    private final Map<String, LinkedHashMap<String, Entry>> index = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private LogSegment active;
+    private long nextSequence;
+
+    /**
+     * @param segmentSize розмір сегмента в байтах, не більше {@link Integer#MAX_VALUE}
+     */
+    public SegmentLogOfflineMessageStore(Path directory, long segmentSize, long flushIntervalMillis, EnvelopeCodec codec) {
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Offline log segment size must be between 1 and " + MAX_SEGMENT_SIZE
+                    + " bytes, got " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize;
+        this.codec = codec;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open offline message log in " + directory, e);
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offline-log-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::compact, COMPACTION_INTERVAL_MILLIS, COMPACTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized boolean append(String receiverId, Packet packet) {
+        String key = RecipientQueue.keyOf(packet);
+        LinkedHashMap<String, Entry> entries = index.computeIfAbsent(receiverId, k -> new LinkedHashMap<>());
+        Entry previous = entries.get(key);
+        if (previous != null && packet.getPayload().equals(previous.segment.readPayload(previous.position))) {
+            return false; // Таке саме повідомлення вже в журналі — не дописуємо його ще раз
+        }
+        byte[] payload = packet.getPayload().getBytes(StandardCharsets.UTF_8);
+        // Повторне збереження замінює запис, але зберігає його місце в черзі отримувача
+        long sequence = previous == null ? nextSequence++ : previous.sequence;
+        Entry entry = write(LogSegment.APPEND, sequence, receiverId, key, payload);
+        entries.put(key, entry);
+        if (previous != null) {
+            previous.segment.live--;
+            entry.segment.cancel(previous.segment);
+            released(previous.segment);
+            reclaim();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized List<Packet> messages(String receiverId) {
+        LinkedHashMap<String, Entry> entries = index.get(receiverId);
+        if (entries == null) {
+            return List.of();
+        }
+        List<Packet> messages = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            String payload = entry.segment.readPayload(entry.position);
+            if (payload != null) {
+                messages.add(Packet.parse(payload, codec));
+            }
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized List<Packet> page(String receiverId, Predicate<String> skip, int limit) {
+        LinkedHashMap<String, Entry> entries = index.get(receiverId);
+        if (entries == null) {
+            return List.of();
+        }
+        List<Packet> page = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Map.Entry<String, Entry> indexed : entries.entrySet()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (skip.test(indexed.getKey())) {
+                continue;
+            }
+            Entry entry = indexed.getValue();
+            String payload = entry.segment.readPayload(entry.position);
+            if (payload != null) {
+                page.add(Packet.parse(payload, codec));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> backlogSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        index.forEach((receiverId, entries) -> sizes.put(receiverId, entries.size()));
+        return sizes;
+    }
+
+    @Override
+    public synchronized boolean remove(String receiverId, String messageId) {
+        Entry acked = applyAck(receiverId, messageId);
+        if (acked == null) {
+            return false;
+        }
+        write(LogSegment.ACK, 0, receiverId, messageId, NO_PAYLOAD).segment.cancel(acked.segment);
+        reclaim();
+        return true;
+    }
+
+    /**
+     * Скидає змінені сегменти на диск (груповий fsync для всіх записів за інтервал).
+     * Список сегментів знімається під блокуванням, а сам fsync виконується без нього, щоб не зупиняти запис;
+     * сегменти, які тим часом видалені або закриті, пропускаються.
+     */
+    public void flush() {
+        List<LogSegment> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(segments);
+        }
+        for (LogSegment segment : snapshot) {
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                // Сегмент лишається зміненим, тож скидання повториться в наступному інтервалі
+                logger.error("Failed to flush offline log segment {}, will retry: {}", segment.path, e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flusher.shutdown();
+        for (LogSegment segment : segments) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                logger.error("Failed to close offline log segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+        segments.clear();
+        reclaimable.clear();
+    }
+
+    private Entry write(byte type, long sequence, String receiverId, String messageId, byte[] payload) {
+        byte[] receiver = receiverId.getBytes(StandardCharsets.UTF_8);
+        byte[] message = messageId.getBytes(StandardCharsets.UTF_8);
+        if (receiver.length > 0xFFFF || message.length > 0xFFFF) {
+            throw new IllegalArgumentException("Identifier is too long for the offline log");
+        }
+        int size = LogSegment.recordSize(receiver, message, payload);
+        if (!active.hasRoom(size)) {
+            roll(size);
+        }
+        int position = active.append(type, sequence, receiver, message, payload);
+        if (type == LogSegment.APPEND) {
+            active.appended++;
+            active.live++;
+        }
+        return new Entry(sequence, active, position);
+    }
+
+    /**
+     * Закриває поточний сегмент для запису і відкриває новий.
+     */
+    private void roll(int recordSize) {
+        try {
+            LogSegment closed = active;
+            closed.force();
+            active = LogSegment.create(directory, closed.id + 1, Math.max(segmentSize, recordSize));
+            segments.addLast(active);
+            released(closed);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create offline log segment", e);
+        }
+    }
+
+    /**
+     * Відмічає сегмент для видалення, якщо він закритий, не має живих записів і не скасовує записів старіших сегментів.
+     * Записи дописуються лише в активний сегмент, тож відмічений сегмент вже не отримає живих записів чи скасувань.
+     */
+    private void released(LogSegment segment) {
+        if (segment != active && segment.live == 0 && !segment.cancelsOthers()) {
+            reclaimable.add(segment);
+        }
+    }
+
+    /**
+     * Видаляє відмічені сегменти. Видалення сегмента знімає скасування з новіших сегментів,
+     * тож вони перевіряються знову і видаляються в цьому ж виклику, якщо звільнились.
+     */
+    private void reclaim() {
+        while (!reclaimable.isEmpty()) {
+            Iterator<LogSegment> next = reclaimable.iterator();
+            LogSegment segment = next.next();
+            next.remove();
+            segments.remove(segment);
+            for (LogSegment newer : segment.cancelledBy()) {
+                newer.forget(segment);
+                released(newer);
+            }
+            try {
+                segment.delete();
+                logger.info("Offline log segment {} reclaimed", segment.path.getFileName());
+            } catch (IOException e) {
+                logger.error("Failed to delete offline log segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Компакція у фоновому потоці: переписує в кінець журналу живі записи закритих сегментів,
+     * у яких їх лишилась невелика частка, і видаляє ці сегменти.
+     */
+    synchronized void compact() {
+        if (segments.isEmpty()) {
+            return; // Сховище закрите
+        }
+        Set<LogSegment> candidates = new HashSet<>();
+        for (LogSegment segment : segments) {
+            if (segment != active && segment.live > 0 && !segment.cancelsOthers()
+                    && segment.live <= segment.appended * COMPACTION_LIVE_RATIO) {
+                candidates.add(segment);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        relocate(candidates);
+        reclaim();
+    }
+
+    /**
+     * Переписує живі записи сегментів у кінець журналу та оновлює індекс за один прохід.
+     */
+    private void relocate(Set<LogSegment> relocated) {
+        for (Iterator<Map.Entry<String, LinkedHashMap<String, Entry>>> receivers = index.entrySet().iterator(); receivers.hasNext(); ) {
+            Map.Entry<String, LinkedHashMap<String, Entry>> receiver = receivers.next();
+            for (Iterator<Map.Entry<String, Entry>> iterator = receiver.getValue().entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Entry> indexed = iterator.next();
+                Entry entry = indexed.getValue();
+                if (!relocated.contains(entry.segment)) {
+                    continue;
+                }
+                String payload = entry.segment.readPayload(entry.position);
+                entry.segment.live--;
+                released(entry.segment);
+                if (payload == null) {
+                    iterator.remove();
+                    continue;
+                }
+                Entry moved = write(LogSegment.APPEND, entry.sequence, receiver.getKey(), indexed.getKey(), payload.getBytes(StandardCharsets.UTF_8));
+                moved.segment.cancel(entry.segment);
+                indexed.setValue(moved);
+            }
+            if (receiver.getValue().isEmpty()) {
+                receivers.remove();
+            }
+        }
+    }
+
+    /**
+     * Відновлює індекс з сегментів на диску.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().matches("segment-\\d+\\.log"))
+                    .sorted()
+                    .toList();
+        }
+
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            long id = Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+            LogSegment segment = LogSegment.open(path, id);
+            segments.addLast(segment);
+
+            int position = 0;
+            LogSegment.Record record;
+            while ((record = segment.read(position)) != null) {
+                if (record.type() == LogSegment.APPEND) {
+                    Entry previous = index.computeIfAbsent(record.receiverId(), k -> new LinkedHashMap<>())
+                            .put(record.messageId(), new Entry(record.sequence(), segment, position));
+                    if (previous != null) {
+                        previous.segment.live--;
+                        segment.cancel(previous.segment);
+                    }
+                    nextSequence = Math.max(nextSequence, record.sequence() + 1);
+                    segment.appended++;
+                    segment.live++;
+                } else if (record.type() == LogSegment.ACK) {
+                    Entry acked = applyAck(record.receiverId(), record.messageId());
+                    if (acked != null) {
+                        segment.cancel(acked.segment);
+                    }
+                }
+                position += record.size();
+            }
+            segment.recoverWritePosition(position);
+        }
+
+        // Переписані під час компакції записи лежать у журналі пізніше за свій первинний порядок
+        int recovered = 0;
+        for (Map.Entry<String, LinkedHashMap<String, Entry>> receiver : index.entrySet()) {
+            LinkedHashMap<String, Entry> sorted = new LinkedHashMap<>();
+            receiver.getValue().entrySet().stream()
+                    .sorted(Comparator.comparingLong(indexed -> indexed.getValue().sequence))
+                    .forEach(indexed -> sorted.put(indexed.getKey(), indexed.getValue()));
+            receiver.setValue(sorted);
+            recovered += sorted.size();
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(LogSegment.create(directory, 0, segmentSize));
+        }
+        active = segments.peekLast();
+        reclaimable.clear();
+        segments.forEach(this::released);
+        logger.info("Offline log opened in {}: {} segments, {} pending messages", directory, segments.size(), recovered);
+        reclaim();
+    }
+
+    /**
+     * Видаляє повідомлення з індексу за його ключем.
+     *
+     * @return видалений запис або null, якщо повідомлення не було в індексі
+     */
+    private Entry applyAck(String receiverId, String messageId) {
+        LinkedHashMap<String, Entry> entries = index.get(receiverId);
+        if (entries == null) {
+            return null;
+        }
+        Entry entry = entries.remove(messageId);
+        if (entry == null) {
+            return null;
+        }
+        entry.segment.live--;
+        released(entry.segment);
+        if (entries.isEmpty()) {
+            index.remove(receiverId);
+        }
+        return entry;
+    }
+
+    /**
+     * Позиція збереженого повідомлення в журналі.
+     */
+    private record Entry(long sequence, LogSegment segment, int position) {
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardExecutorTest {
+
+    @Test
+    void rejectsNewWorkWhenShardQueueFullButKeepsContinuations() throws InterruptedException {
+        ShardExecutor shards = new ShardExecutor(1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        AtomicInteger executed = new AtomicInteger();
+        try {
+            // Перше завдання займає потік шарду, наступні два заповнюють чергу
+            assertTrue(shards.tryExecute("alice", () -> {
+                await(release);
+                executed.incrementAndGet();
+                done.countDown();
+            }));
+            waitUntilQueued(shards, 0);
+            for (int i = 0; i < 2; i++) {
+                assertTrue(shards.tryExecute("alice", () -> {
+                    executed.incrementAndGet();
+                    done.countDown();
+                }));
+            }
+            assertFalse(shards.tryExecute("alice", executed::incrementAndGet));
+            assertEquals(2, shards.queued(0));
+            assertEquals(1, shards.rejected());
+
+            shards.execute("alice", () -> {
+                executed.incrementAndGet();
+                done.countDown();
+            });
+            assertEquals(3, shards.queued(0));
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(4, executed.get());
+        } finally {
+            shards.shutdown();
+        }
+    }
+
+    private static void waitUntilQueued(ShardExecutor shards, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shards.queued(0) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
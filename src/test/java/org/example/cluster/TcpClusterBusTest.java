@@ -0,0 +1,130 @@
+package org.example.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TcpClusterBusTest {
+
+    private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+    @Test
+    void deliversAndAcksBetweenAuthenticatedNodes() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        Recording listenerA = new Recording();
+        Recording listenerB = new Recording();
+        try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress(LOOPBACK, portA), "s3cret",
+                Map.of("b", new InetSocketAddress(LOOPBACK, portB)));
+             TcpClusterBus b = new TcpClusterBus("b", new InetSocketAddress(LOOPBACK, portB), "s3cret",
+                     Map.of("a", new InetSocketAddress(LOOPBACK, portA)))) {
+            a.start(listenerA);
+            b.start(listenerB);
+            assertTrue(eventually(() -> a.deliver("b", "bob", "{}", "m-1")));
+            assertEquals("bob {}", listenerB.deliveries.poll(5, TimeUnit.SECONDS));
+            assertEquals("bob m-1", listenerA.acks.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void doesNotSendToNodeThatCannotProveSecret() throws Exception {
+        try (ServerSocket impostor = new ServerSocket(0, 1, LOOPBACK)) {
+            CountDownLatch answered = new CountDownLatch(1);
+            Thread fake = new Thread(() -> {
+                try (Socket socket = impostor.accept()) {
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    out.write(new byte[32]);
+                    out.flush();
+                    in.readByte();
+                    for (int field = 0; field < 3; field++) {
+                        in.readFully(new byte[in.readInt()]);
+                    }
+                    // Підпис без знання секрету
+                    out.writeByte(7);
+                    out.writeInt(32);
+                    out.write(new byte[32]);
+                    out.flush();
+                    answered.countDown();
+                    in.read();
+                } catch (IOException ignored) {
+                    // З'єднання закрив вузол, що перевіряв підпис
+                }
+            });
+            fake.setDaemon(true);
+            fake.start();
+            try (TcpClusterBus a = new TcpClusterBus("a", new InetSocketAddress(LOOPBACK, freePort()), "s3cret",
+                    Map.of("b", new InetSocketAddress(LOOPBACK, impostor.getLocalPort())))) {
+                a.start(new Recording());
+                assertTrue(answered.await(5, TimeUnit.SECONDS));
+                Thread.sleep(200);
+                assertFalse(a.deliver("b", "bob", "{}", "m-1"));
+            }
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, LOOPBACK)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class Recording implements ClusterBus.Listener {
+        final BlockingQueue<String> deliveries = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> acks = new LinkedBlockingQueue<>();
+
+        @Override
+        public Map<String, String> localPresence() {
+            return Map.of();
+        }
+
+        @Override
+        public void onRemotePresence(String nodeId, String userId, String status) {
+        }
+
+        @Override
+        public void onNodeDown(String nodeId) {
+        }
+
+        @Override
+        public void onRemoteDelivery(String receiverId, String payload) {
+            deliveries.add(receiverId + " " + payload);
+        }
+
+        @Override
+        public void onDeliveryAck(String receiverId, String ackKey) {
+            acks.add(receiverId + " " + ackKey);
+        }
+
+        @Override
+        public void onRemoteHandshake(String senderId, String receiverId, String publicKey) {
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.presence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TimingWheelTest {
+
+    @Test
+    void drainsKeyInItsDeadlineTick() {
+        TimingWheel wheel = new TimingWheel(1000, 100);
+        wheel.schedule("alice", 350);
+        assertArrayEquals(new String[0], wheel.drain(2));
+        assertArrayEquals(new String[]{"alice"}, wheel.drain(3));
+    }
+
+    @Test
+    void reschedulingIntoDrainedTickMovesToNextTick() {
+        TimingWheel wheel = new TimingWheel(1000, 100);
+        wheel.drain(5);
+        // Дедлайн у вже вибраному такті 5 і в такті, що вже минув
+        wheel.schedule("alice", 550);
+        wheel.schedule("bob", 120);
+        String[] next = wheel.drain(6);
+        Arrays.sort(next);
+        assertArrayEquals(new String[]{"alice", "bob"}, next);
+    }
+}
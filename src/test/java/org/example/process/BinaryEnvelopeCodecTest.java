@@ -0,0 +1,97 @@
+package org.example.process;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Перевіряє бінарне кодування конвертів: відновлення полів для всіх комбінацій присутніх полів
+ * і відмову на пошкоджених кадрах замість мовчки зіпсованого конверта.
+ */
+class BinaryEnvelopeCodecTest {
+
+    private final BinaryEnvelopeCodec codec = new BinaryEnvelopeCodec();
+
+    @Test
+    void roundTripsEveryFieldCombination() {
+        Envelope.Field[] fields = Envelope.Field.all();
+        for (int mask = 0; mask < 1 << fields.length; mask++) {
+            Envelope envelope = new Envelope();
+            for (Envelope.Field field : fields) {
+                if ((mask & (1 << field.ordinal())) != 0) {
+                    // Порожній рядок, кирилиця і довге значення з багатобайтовою довжиною
+                    String value = switch (field.ordinal() % 3) {
+                        case 0 -> "";
+                        case 1 -> field.key() + " привіт   😀";
+                        default -> "x".repeat(200 + field.ordinal());
+                    };
+                    field.set(envelope, value);
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(codec.encode(envelope));
+            Envelope decoded = codec.decode(buffer);
+            assertFalse(buffer.hasRemaining(), "mask " + mask);
+            for (Envelope.Field field : fields) {
+                assertEquals(field.get(envelope), field.get(decoded), field.key() + ", mask " + mask);
+            }
+        }
+    }
+
+    @Test
+    void decodesFromDirectBufferAtOffset() {
+        Envelope envelope = new Envelope();
+        Envelope.Field.SENDER_ID.set(envelope, "alice");
+        Envelope.Field.MESSAGE.set(envelope, "повідомлення");
+        byte[] encoded = codec.encode(envelope);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length + 3);
+        buffer.put(new byte[3]).put(encoded).flip().position(3);
+        Envelope decoded = codec.decode(buffer);
+        assertEquals("alice", Envelope.Field.SENDER_ID.get(decoded));
+        assertEquals("повідомлення", Envelope.Field.MESSAGE.get(decoded));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        Envelope envelope = new Envelope();
+        Envelope.Field.SENDER_ID.set(envelope, "alice");
+        Envelope.Field.MESSAGE.set(envelope, "y".repeat(300));
+        Envelope.Field.TIMESTAMP.set(envelope, "1700000000000");
+        byte[] encoded = codec.encode(envelope);
+        for (int length = 0; length < encoded.length; length++) {
+            ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(encoded, length));
+            assertThrows(IllegalArgumentException.class, () -> codec.decode(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsMalformedVarint() {
+        // Маска з одним полем, далі шість байтів продовження varint
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1});
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void rejectsNegativeVarintLength() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void rejectsLengthBeyondRemainingBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, 10, 'a', 'b', 'c'});
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void rejectsUnknownFieldBits() {
+        int unknown = 1 << Envelope.Field.all().length;
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) (unknown >>> 8), (byte) unknown, 1, 'a'});
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(ByteBuffer.wrap(new byte[]{(byte) 0x80, 0})));
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.process;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+/**
+ * Перевіряє, що {@link StreamingEnvelopeCodec} розбирає і записує конверти так само, як еталонний
+ * {@link JsonOrgEnvelopeCodec}: однакові значення полів для тих самих рядків і однакові помилки.
+ */
+class EnvelopeCodecCompatibilityTest {
+
+    private final EnvelopeCodec reference = new JsonOrgEnvelopeCodec();
+    private final EnvelopeCodec streaming = new StreamingEnvelopeCodec();
+
+    static Stream<Arguments> validInputs() {
+        return Stream.of(
+                arguments("повідомлення", "{\"senderId\":\"a\",\"receiverId\":\"b\",\"operation\":\"message\","
+                        + "\"message\":\"привіт\",\"messageId\":\"m-1\",\"timestamp\":\"1700000000000\"}"),
+                arguments("порожній об'єкт", "{}"),
+                arguments("пробіли між лексемами", " {\n\t\"senderId\" : \"a\" ,\r\n\"message\":\"x\" } "),
+                arguments("escape-послідовності", "{\"message\":\"a\\\"b\\\\c\\/d\\n\\t\\u0416\\u00e9\"}"),
+                arguments("escape у ключі", "{\"mess\\u0061ge\":\"x\"}"),
+                arguments("null у полі", "{\"message\":null,\"senderId\":\"a\"}"),
+                arguments("true і false", "{\"message\":true,\"fileSize\":false}"),
+                arguments("ціле число", "{\"timestamp\":1700000000000,\"fileSize\":0}"),
+                arguments("від'ємне число", "{\"fileSize\":-42}"),
+                arguments("дуже велике ціле", "{\"timestamp\":123456789012345678901234567890}"),
+                arguments("число з експонентою", "{\"timestamp\":1e2}"),
+                arguments("дробове число", "{\"fileSize\":1.50}"),
+                arguments("від'ємний нуль", "{\"fileSize\":-0}"),
+                arguments("ведучий нуль", "{\"fileSize\":007}"),
+                arguments("літерал у верхньому регістрі", "{\"message\":TRUE,\"senderId\":NULL}"),
+                arguments("вкладений об'єкт у полі", "{\"message\": { \"publicKey\" : \"k\" , \"n\" : 1 }}"),
+                arguments("вкладений масив у полі", "{\"message\": [ 1 , \"a\" ]}"),
+                arguments("невідомі ключі", "{\"extra\":{\"a\":[1,2,{\"b\":null}]},\"senderId\":\"a\",\"other\":[]}"),
+                arguments("невідомий ключ з числом", "{\"extra\":1e5,\"message\":\"x\"}"),
+                arguments("ключ без лапок", "{senderId:\"a\",message:\"x\"}"),
+                arguments("значення без лапок", "{\"senderId\":abc}"),
+                arguments("одинарні лапки", "{'senderId':'a'}"),
+                arguments("крапка з комою як роздільник", "{\"senderId\":\"a\";\"message\":\"x\"}"),
+                arguments("табуляція всередині рядка", "{\"message\":\"a\tb\"}"),
+                arguments("вміст після об'єкта", "{\"senderId\":\"a\"} trailing")
+        );
+    }
+
+    static Stream<Arguments> invalidInputs() {
+        return Stream.of(
+                arguments("повторений ключ конверта", "{\"senderId\":\"a\",\"senderId\":\"b\"}"),
+                arguments("повторений ключ через escape", "{\"senderId\":\"a\",\"sender\\u0049d\":\"b\"}"),
+                arguments("повторений null", "{\"message\":null,\"message\":null}"),
+                arguments("повторений невідомий ключ", "{\"extra\":1,\"extra\":2}"),
+                arguments("незакритий об'єкт", "{\"senderId\":\"a\""),
+                arguments("незакритий рядок", "{\"senderId\":\"a}"),
+                arguments("некоректний вкладений об'єкт", "{\"extra\":{\"a\" 1}}"),
+                arguments("незакритий вкладений масив", "{\"extra\":[1,2}"),
+                arguments("некоректний escape", "{\"message\":\"\\x\"}"),
+                arguments("некоректний unicode escape", "{\"message\":\"\\u12g4\"}"),
+                arguments("перенесення рядка всередині рядка", "{\"message\":\"a\nb\"}"),
+                arguments("відсутнє значення", "{\"message\":}"),
+                arguments("масив замість об'єкта", "[]"),
+                arguments("порожній рядок", "")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("validInputs")
+    void decodesSameFieldsAsOrgJson(String description, String json) {
+        Envelope expected = reference.decode(json);
+        Envelope actual = streaming.decode(json);
+        for (Envelope.Field field : Envelope.Field.all()) {
+            assertEquals(field.get(expected), field.get(actual), field.key());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("invalidInputs")
+    void rejectsSameInputsAsOrgJson(String description, String json) {
+        assertThrows(JSONException.class, () -> reference.decode(json));
+        assertThrows(JSONException.class, () -> streaming.decode(json));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("validInputs")
+    void encodesSameObjectAsOrgJson(String description, String json) {
+        Envelope envelope = reference.decode(json);
+        String expected = reference.encode(envelope);
+        String actual = streaming.encode(envelope);
+        assertTrue(new JSONObject(expected).similar(new JSONObject(actual)), actual);
+
+        Envelope.Field[] selected = {Envelope.Field.MESSAGE_ID, Envelope.Field.MESSAGE_STATUS, Envelope.Field.SENDER_ID};
+        assertTrue(new JSONObject(reference.encode(envelope, selected))
+                .similar(new JSONObject(streaming.encode(envelope, selected))));
+    }
+
+    @Test
+    void escapesLikeJsonObjectQuote() {
+        String value = "</script>\"\\\b\f\n\r\t\u0001\u0085\u2028 ок";
+        StringBuilder out = new StringBuilder();
+        StreamingEnvelopeCodec.quote(value, out);
+        assertEquals(JSONObject.quote(value), out.toString());
+    }
+
+    @Test
+    void roundTripPreservesFields() {
+        Envelope envelope = reference.decode("{\"senderId\":\"a\",\"receiverId\":\"b\",\"operation\":\"message\","
+                + "\"message\":\"рядок з \\\"лапками\\\" і \\u2028\",\"messageId\":\"m\",\"timestamp\":\"1\"}");
+        Envelope decoded = streaming.decode(streaming.encode(envelope));
+        for (Envelope.Field field : Envelope.Field.all()) {
+            assertEquals(field.get(envelope), field.get(decoded), field.key());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.store;
+
+import org.example.process.Process;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class HandshakeKeyStoreTest {
+
+    @Test
+    void exchangesWhenSecondSideOffersInEitherOrder() {
+        for (String[] order : new String[][]{{"alice", "bob"}, {"bob", "alice"}}) {
+            HandshakeKeyStore store = new HandshakeKeyStore();
+            assertEquals(HandshakeKeyStore.Offer.Status.WAITING, store.offer(order[0], order[1], order[0] + "-key").status());
+            HandshakeKeyStore.Offer offer = store.offer(order[1], order[0], order[1] + "-key");
+            assertEquals(HandshakeKeyStore.Offer.Status.EXCHANGE, offer.status());
+            assertEquals(order[0] + "-key", offer.peerKey());
+            assertEquals("alice-key", store.get("alice", "bob"));
+            assertEquals("bob-key", store.get("bob", "alice"));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void sameKeyAgainIsUnchanged() {
+        HandshakeKeyStore store = new HandshakeKeyStore();
+        store.offer("alice", "bob", "k");
+        assertEquals(HandshakeKeyStore.Offer.Status.UNCHANGED, store.offer("alice", "bob", "k").status());
+        store.offer("bob", "alice", "kb");
+        assertEquals(HandshakeKeyStore.Offer.Status.UNCHANGED, store.offer("alice", "bob", "k").status());
+    }
+
+    @Test
+    void replacedKeyIsExchangedAgain() {
+        HandshakeKeyStore store = new HandshakeKeyStore();
+        store.offer("alice", "bob", "k1");
+        store.offer("bob", "alice", "kb");
+        HandshakeKeyStore.Offer offer = store.offer("alice", "bob", "k2");
+        assertEquals(HandshakeKeyStore.Offer.Status.EXCHANGE, offer.status());
+        assertEquals("kb", offer.peerKey());
+        assertEquals("k2", store.get("alice", "bob"));
+    }
+
+    @Test
+    void pairKeyDoesNotMixPairsWithSeparatorInIds() {
+        assertNotEquals(Process.pairKey("a:b", "c"), Process.pairKey("a", "b:c"));
+        HandshakeKeyStore store = new HandshakeKeyStore();
+        store.offer("a:b", "c", "k1");
+        assertEquals(HandshakeKeyStore.Offer.Status.WAITING, store.offer("a", "b:c", "k2").status());
+    }
+
+    @Test
+    void concurrentOffersFromBothSidesExchangeExactlyOnce() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                HandshakeKeyStore store = new HandshakeKeyStore();
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<HandshakeKeyStore.Offer> alice = threads.submit(() -> {
+                    start.await();
+                    return store.offer("alice", "bob", "ka");
+                });
+                Future<HandshakeKeyStore.Offer> bob = threads.submit(() -> {
+                    start.await();
+                    return store.offer("bob", "alice", "kb");
+                });
+                int exchanges = 0;
+                for (HandshakeKeyStore.Offer offer : new HandshakeKeyStore.Offer[]{alice.get(), bob.get()}) {
+                    if (offer.status() == HandshakeKeyStore.Offer.Status.EXCHANGE) {
+                        exchanges++;
+                    }
+                }
+                assertEquals(1, exchanges, "round " + round);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.store;
+
+import org.example.process.Packet;
+import org.example.process.StreamingEnvelopeCodec;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class InMemoryOfflineMessageStoreTest {
+
+    private static final String RECEIVER = "bob";
+
+    private final InMemoryOfflineMessageStore store = new InMemoryOfflineMessageStore();
+
+    @Test
+    void newerHandshakeKeyReplacesPreviousOne() {
+        store.append(RECEIVER, packet("handshake", "{\"publicKey\":\"k1\"}"));
+        store.append(RECEIVER, packet("handshake", "{\"publicKey\":\"k2\"}"));
+        assertEquals(List.of("{\"publicKey\":\"k2\"}"), messages());
+    }
+
+    @Test
+    void keepsEveryOtherMessageWithoutId() {
+        store.append(RECEIVER, packet("message", "first"));
+        store.append(RECEIVER, packet("message", "second"));
+        assertEquals(List.of("first", "second"), messages());
+        // Той самий кадр повторно не зберігається
+        assertFalse(store.append(RECEIVER, packet("message", "first")));
+        assertEquals(List.of("first", "second"), messages());
+    }
+
+    private List<String> messages() {
+        return store.messages(RECEIVER).stream().map(packet -> new JSONObject(packet.getPayload()).getString("message")).toList();
+    }
+
+    private static Packet packet(String operation, String message) {
+        return Packet.parse(new JSONObject()
+                .put("senderId", "alice")
+                .put("receiverId", RECEIVER)
+                .put("operation", operation)
+                .put("message", message)
+                .toString(), new StreamingEnvelopeCodec());
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.store;
+
+import org.example.process.EnvelopeCodec;
+import org.example.process.Packet;
+import org.example.process.StreamingEnvelopeCodec;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogOfflineMessageStoreTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final String RECEIVER = "bob";
+
+    private final EnvelopeCodec codec = new StreamingEnvelopeCodec();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reclaimsFullyAckedSegmentBehindLiveHead() throws IOException {
+        try (SegmentLogOfflineMessageStore store = open()) {
+            for (int i = 0; i < 30; i++) {
+                store.append(RECEIVER, packet("m-" + i, "message " + i));
+            }
+            assertTrue(Files.exists(segment(1)));
+            // m-0 лишається непідтвердженим у найстарішому сегменті
+            for (int i = 1; i < 30; i++) {
+                store.remove(RECEIVER, "m-" + i);
+            }
+            assertTrue(Files.exists(segment(0)));
+            assertFalse(Files.exists(segment(1)));
+            assertEquals(List.of(payload("m-0", "message 0")), payloads(store));
+        }
+        try (SegmentLogOfflineMessageStore store = open()) {
+            assertEquals(List.of(payload("m-0", "message 0")), payloads(store));
+        }
+    }
+
+    @Test
+    void keepsAckSegmentWhileAckedRecordStillOnDisk() throws IOException {
+        try (SegmentLogOfflineMessageStore store = open()) {
+            for (int i = 0; i < 30; i++) {
+                store.append(RECEIVER, packet("m-" + i, "message " + i));
+            }
+            // Підтвердження m-1 записане в пізніший сегмент, а m-1 лишається в сегменті 0 разом з живим m-0
+            store.remove(RECEIVER, "m-1");
+            for (int i = 2; i < 30; i++) {
+                store.remove(RECEIVER, "m-" + i);
+            }
+        }
+        try (SegmentLogOfflineMessageStore store = open()) {
+            assertEquals(List.of(payload("m-0", "message 0")), payloads(store));
+        }
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndKeepsOrder() throws IOException {
+        try (SegmentLogOfflineMessageStore store = open()) {
+            for (int i = 0; i < 30; i++) {
+                store.append(RECEIVER, packet("m-" + i, "message " + i));
+            }
+            for (int i = 1; i < 30; i++) {
+                if (i % 10 != 0) {
+                    store.remove(RECEIVER, "m-" + i);
+                }
+            }
+            store.compact();
+            assertFalse(Files.exists(segment(0)));
+        }
+        try (SegmentLogOfflineMessageStore store = open()) {
+            assertEquals(List.of(payload("m-0", "message 0"), payload("m-10", "message 10"), payload("m-20", "message 20")),
+                    payloads(store));
+        }
+    }
+
+    @Test
+    void matchesModelAfterRandomOperationsAndRecovery() throws IOException {
+        Random random = new Random(7);
+        Map<String, String> model = new LinkedHashMap<>();
+        int next = 0;
+        for (int round = 0; round < 5; round++) {
+            try (SegmentLogOfflineMessageStore store = open()) {
+                assertEquals(new ArrayList<>(model.values()), payloads(store));
+                for (int operation = 0; operation < 400; operation++) {
+                    int choice = random.nextInt(10);
+                    if (choice < 5 || model.isEmpty()) {
+                        String messageId = "m-" + next++;
+                        String payload = payload(messageId, "x".repeat(random.nextInt(200)));
+                        store.append(RECEIVER, Packet.parse(payload, codec));
+                        model.put(messageId, payload);
+                    } else {
+                        String messageId = new ArrayList<>(model.keySet()).get(random.nextInt(model.size()));
+                        if (choice < 7) {
+                            String payload = payload(messageId, "replaced " + operation);
+                            store.append(RECEIVER, Packet.parse(payload, codec));
+                            model.put(messageId, payload);
+                        } else {
+                            assertTrue(store.remove(RECEIVER, messageId));
+                            model.remove(messageId);
+                        }
+                    }
+                    if (operation % 50 == 0) {
+                        store.compact();
+                    }
+                }
+                assertEquals(new ArrayList<>(model.values()), payloads(store));
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Без видалення сегментів за 2000 операцій їх набралось би кілька сотень
+            assertTrue(files.count() < 100);
+        }
+    }
+
+    @Test
+    void forceSkipsDeletedSegment() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 0, SEGMENT_SIZE);
+        segment.append(LogSegment.ACK, 0, new byte[]{'b'}, new byte[]{'m'}, null);
+        segment.delete();
+        // Скидання, що відстало від видалення сегмента, не звертається до закритого файлу
+        segment.force();
+        assertFalse(Files.exists(segment(0)));
+    }
+
+    @Test
+    void rejectsSegmentSizeAboveMappingLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SegmentLogOfflineMessageStore(directory, 4096L * 1024 * 1024, 1000, codec));
+    }
+
+    private SegmentLogOfflineMessageStore open() {
+        return new SegmentLogOfflineMessageStore(directory, SEGMENT_SIZE, 1000, codec);
+    }
+
+    private Path segment(long id) {
+        return directory.resolve(LogSegment.fileName(id));
+    }
+
+    private Packet packet(String messageId, String message) {
+        return Packet.parse(payload(messageId, message), codec);
+    }
+
+    private static String payload(String messageId, String message) {
+        return new JSONObject()
+                .put("senderId", "alice")
+                .put("receiverId", RECEIVER)
+                .put("operation", "message")
+                .put("message", message)
+                .put("messageId", messageId)
+                .toString();
+    }
+
+    private static List<String> payloads(OfflineMessageStore store) {
+        return store.messages(RECEIVER).stream().map(Packet::getPayload).toList();
+    }
+}